@@ -2,10 +2,15 @@ package controllers;
 
 import java.util.ArrayList;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import jobs.DeleteUserJob;
+import jobs.ReindexJob;
 import models.Answer;
 import models.Comment;
+import models.Leaderboard;
 import models.Notification;
 import models.Question;
 import models.Tag;
@@ -13,18 +18,20 @@ import models.TimeTracker;
 import models.User;
 import models.database.Database;
 import play.data.validation.Required;
-import play.mvc.Before;
 import play.mvc.Controller;
+import play.mvc.With;
 
+@With(CurrentUser.class)
 public class Application extends Controller {
 
-	@Before
-	static void setConnectedUser() {
-		if (Security.isConnected()) {
-			User user = Database.get().users().get(Security.connected());
-			renderArgs.put("user", user);
-		}
-	}
+	/** How long a notification stream request waits for news (in ms). */
+	private static final long STREAM_TIMEOUT = 30 * 1000;
+	/** How many watched questions are listed per page. */
+	private static final int WATCHED_PAGE_SIZE = 20;
+	/** How many users are listed at most in the user directory. */
+	private static final int DIRECTORY_SIZE = 50;
+	/** How many users are listed per page of the leaderboard. */
+	private static final int LEADERBOARD_PAGE_SIZE = 20;
 
 	public static void index() {
 		List<Question> questions = Database.get().questions().all();
@@ -41,7 +48,11 @@ public class Application extends Controller {
 				similarQuestions = similarQuestions.subList(0, 3);
 			}
 			List<Answer> answers = question.answers();
-			render(question, answers, similarQuestions);
+			Question duplicate = null;
+			if (flash.get("duplicate") != null)
+				duplicate = Database.get().questions().get(
+						Integer.parseInt(flash.get("duplicate")));
+			render(question, answers, similarQuestions, duplicate);
 		}
 	}
 
@@ -85,9 +96,12 @@ public class Application extends Controller {
 	public static void signup(@Required String username, String password,
 			String passwordrepeat, String email) {
 
+		User user = null;
 		if (User.checkEmail(email) && password.equals(passwordrepeat)
-				&& User.isAvailable(username)) {
-			User user = Database.get().users().register(username, password);
+				&& User.isAvailable(username))
+			// null if somebody else has just taken the name
+			user = Database.get().users().register(username, password);
+		if (user != null) {
 			user.setEmail(email);
 			// Mark user as connected
 			session.put("username", username);
@@ -110,14 +124,12 @@ public class Application extends Controller {
 
 	public static void showprofile(String userName) {
 		User showUser = Database.get().users().get(userName);
-		boolean canEdit = true;
-		if(session.get("username") != null && session.get("username").equals(userName)) {
-			render(showUser, canEdit);
-		}
-		else {
-			canEdit = false;
-			render(showUser, canEdit);
-		}
+		boolean canEdit = showUser != null
+				&& showUser == Session.get().currentUser();
+		int rank = showUser != null ? showUser.getRank() : 0;
+		int rankPage = (rank + LEADERBOARD_PAGE_SIZE - 1)
+				/ LEADERBOARD_PAGE_SIZE;
+		render(showUser, canEdit, rank, rankPage);
 	}
 	
 	public static void editProfile(String userName) {
@@ -143,9 +155,19 @@ public class Application extends Controller {
 		renderJSON(tags);
 	}
 	
-	public static void search(String term) {
+	public static void search(String term, String tag) {
 		List<Question> results = Database.get().questions().searchFor(term);
-		render(results,term);
+		String suggestion = Database.get().questions().suggestFor(term);
+		Map<Tag, Integer> facets = Database.get().questions().countTags(results);
+		Tag selected = tag == null ? null : Database.get().tags().get(tag);
+		if (selected != null) {
+			List<Question> filtered = new ArrayList<Question>();
+			for (Question question : results)
+				if (selected.contains(question))
+					filtered.add(question);
+			results = filtered;
+		}
+		render(results,term,suggestion,facets,selected);
 	}
 
 	public static void notifications() {
@@ -157,6 +179,84 @@ public class Application extends Controller {
 			Application.index();
 	}
 
+	public static void users(String prefix) {
+		if (prefix == null)
+			prefix = "";
+		List<User> users = Database.get().users().findByPrefix(prefix,
+				DIRECTORY_SIZE);
+		render(prefix, users);
+	}
+
+	public static void leaderboard(int page) {
+		Leaderboard leaderboard = Leaderboard.get();
+		int pages = Math.max(1, (leaderboard.size() + LEADERBOARD_PAGE_SIZE - 1)
+				/ LEADERBOARD_PAGE_SIZE);
+		page = Math.max(1, Math.min(page, pages));
+		int offset = (page - 1) * LEADERBOARD_PAGE_SIZE;
+		List<User> users = leaderboard.page(offset, LEADERBOARD_PAGE_SIZE);
+		render(users, offset, page, pages);
+	}
+
+	public static void watched(int page) {
+		User user = Session.get().currentUser();
+		if (user == null)
+			Application.index();
+		int pages = Math.max(1, (user.countWatchedQuestions()
+				+ WATCHED_PAGE_SIZE - 1) / WATCHED_PAGE_SIZE);
+		page = Math.max(1, Math.min(page, pages));
+		List<Question> questions = user.getWatchedQuestions((page - 1)
+				* WATCHED_PAGE_SIZE, WATCHED_PAGE_SIZE);
+		render(questions, page, pages);
+	}
+
+	/**
+	 * Sends the notifications added or updated since the change with the
+	 * sequence number <code>cursor</code> as JSON. If there are none, the
+	 * request waits (without blocking a thread) until there are some or
+	 * {@link #STREAM_TIMEOUT} ms have passed.
+	 */
+	public static void notificationStream(int cursor) {
+		User user = Session.get().currentUser();
+		if (user == null)
+			forbidden();
+
+		List<Notification> delta = user.getNotificationsSince(cursor);
+		Long since = (Long) request.args.get("streamSince");
+		if (since == null) {
+			since = System.currentTimeMillis();
+			request.args.put("streamSince", since);
+		}
+		long left = STREAM_TIMEOUT - (System.currentTimeMillis() - since);
+		if (delta.isEmpty() && left > 0)
+			waitFor(user.awaitNotificationsSince(cursor, left));
+
+		List<Map<String, Object>> notifications = new ArrayList<Map<String, Object>>();
+		for (Notification n : delta) {
+			Map<String, Object> notification = new HashMap<String, Object>();
+			notification.put("id", n.getID());
+			notification.put("count", n.getCount());
+			notification.put("isNew", n.isNew());
+			notification.put("summary", n.getAbout().summary());
+			cursor = Math.max(cursor, n.getSequence());
+			notifications.add(notification);
+		}
+		Map<String, Object> result = new HashMap<String, Object>();
+		result.put("cursor", cursor);
+		result.put("unread", user.countNewNotifications());
+		result.put("notifications", notifications);
+		renderJSON(result);
+	}
+
+	public static void deletionStatus(int id) {
+		DeleteUserJob job = DeleteUserJob.get(id);
+		render(id, job);
+	}
+
+	public static void reindexStatus() {
+		ReindexJob job = ReindexJob.last();
+		render(job);
+	}
+
 	public static void showStatisticalOverview() {
 		GregorianCalendar now = new GregorianCalendar();
 		TimeTracker t = TimeTracker.getRealTimeTracker();
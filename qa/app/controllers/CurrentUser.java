@@ -0,0 +1,20 @@
+package controllers;
+
+import models.User;
+import play.mvc.Before;
+import play.mvc.Controller;
+
+/**
+ * Looks up the connected user once per request and makes him available both
+ * to all controllers (through {@link Session#currentUser()}) and to all
+ * templates (as <code>user</code>).
+ */
+public class CurrentUser extends Controller {
+
+	@Before
+	static void setConnectedUser() {
+		User user = Session.get().currentUser();
+		if (user != null)
+			renderArgs.put("user", user);
+	}
+}
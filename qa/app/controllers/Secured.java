@@ -1,20 +1,44 @@
 package controllers;
 
 import java.text.ParseException;
+import java.util.List;
 
+import jobs.DeleteUserJob;
+import jobs.ReindexJob;
 import models.Answer;
 import models.Comment;
 import models.Notification;
 import models.Question;
+import models.RateLimiter;
+import models.Tag;
 import models.User;
 import models.database.Database;
 import play.data.validation.Required;
+import play.mvc.Before;
 import play.mvc.Controller;
 import play.mvc.Http;
 import play.mvc.With;
 
-@With(Secure.class)
+@With( { Secure.class, CurrentUser.class })
 public class Secured extends Controller {
+
+	/**
+	 * Turns away users (and IP addresses) posting or voting too often, before
+	 * they get to the model.
+	 */
+	@Before(only = { "newQuestion", "newAnswer", "newCommentQuestion",
+			"newCommentAnswer", "voteQuestionUp", "voteQuestionDown",
+			"voteAnswerUp", "voteAnswerDown" })
+	static void checkRateLimit() {
+		long wait = RateLimiter.get().acquire(Session.get().currentUser(),
+				request.remoteAddress);
+		if (wait > 0) {
+			response.setHeader("Retry-After", String
+					.valueOf((wait + 999) / 1000));
+			error(429, "Too many posts and votes, please slow down");
+		}
+	}
+
 	public static void newQuestion(@Required String content, String tags) {
 		if (!validation.hasErrors()) {
 			User user = Session.get().currentUser();
@@ -22,6 +46,10 @@ public class Secured extends Controller {
 			question.setTagString(tags);
 			user.startObserving(question);
 			question.setTagString(tags);
+			List<Question> duplicates = Database.get().questions()
+					.findDuplicates(question);
+			if (!duplicates.isEmpty())
+				flash.put("duplicate", duplicates.get(0).id());
 			Application.question(question.id());
 		} else {
 			Application.index();
@@ -133,20 +161,24 @@ public class Secured extends Controller {
 
 	public static void deleteUser(String name) throws Throwable {
 		User user = Database.get().users().get(name);
-		if (hasPermissionToDelete(Session.get().currentUser(), user)) {
-			boolean deleteSelf = name.equals(Session.get().currentUser().getName());
-			user.delete();
-			if (deleteSelf)
-				Secure.logout();
-		}
-		Application.index();
+		startDeletion(user, false);
 	}
 
 	public static void anonymizeUser(String name) throws Throwable {
 		User user = Database.get().users().get(name);
-		if (hasPermissionToDelete(Session.get().currentUser(), user))
-			user.anonymize(true, false);
-		deleteUser(name);
+		startDeletion(user, true);
+	}
+
+	private static void startDeletion(User user, boolean anonymize)
+			throws Throwable {
+		User currentUser = Session.get().currentUser();
+		if (user != null && hasPermissionToDelete(currentUser, user)) {
+			DeleteUserJob.start(user, anonymize);
+			if (user == currentUser)
+				Secure.logout();
+			Application.deletionStatus(user.getID());
+		}
+		Application.index();
 	}
 
 	public static void selectBestAnswer(int questionId, int answerId) {
@@ -215,13 +247,31 @@ public class Secured extends Controller {
 		Application.question(id);
 	}
 
+	public static void watchTag(String name) {
+		Tag tag = Tag.get(name);
+		User user = Session.get().currentUser();
+		if (tag != null)
+			user.startWatching(tag);
+		if (!redirectToCallingPage())
+			Application.search(name, name);
+	}
+
+	public static void unwatchTag(String name) {
+		Tag tag = Database.get().tags().get(name);
+		User user = Session.get().currentUser();
+		if (tag != null)
+			user.stopWatching(tag);
+		if (!redirectToCallingPage())
+			Application.search(name, name);
+	}
+
 	public static void followNotification(int id) {
 		User user = Session.get().currentUser();
 		Notification notification = user.getNotification(id);
 		if (notification != null)
 			notification.unsetNew();
-		if (notification != null && notification.getAbout() instanceof Answer)
-			Application.question(((Answer) notification.getAbout()).getQuestion().id());
+		if (notification != null)
+			Application.question(notification.getQuestion().id());
 		else if (!redirectToCallingPage())
 			Application.notifications();
 	}
@@ -272,4 +322,11 @@ public class Secured extends Controller {
 			Application.question(id);
 		}
 	}
+
+	public static void reindex() {
+		User user = Session.get().currentUser();
+		if (user.isModerator())
+			ReindexJob.start();
+		Application.reindexStatus();
+	}
 }
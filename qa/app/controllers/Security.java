@@ -6,8 +6,8 @@ import models.database.Database;
 public class Security extends Secure.Security {
 
 	static boolean authenticate(String username, String password) {
-		return Database.get().users().get(username) != null && 
-				Database.get().users().get(username).checkPW(password);
+		User user = Database.get().users().get(username);
+		return user != null && user.checkPW(password);
 	}
 
 	static void onDisconnected() {
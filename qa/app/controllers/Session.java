@@ -2,6 +2,7 @@ package controllers;
 
 import models.User;
 import models.database.Database;
+import play.mvc.Http;
 
 public class Session implements ISession{
 	private static ISession instance;
@@ -17,7 +18,26 @@ public class Session implements ISession{
 		return instance;
 	}
 	
+	/** The key under which the current user is cached per request. */
+	private static final String CURRENT_USER = "currentUser";
+
+	/**
+	 * Gets the connected user, looking him up only once per request.
+	 * 
+	 * @return the connected user or <code>null</code>
+	 */
 	public User currentUser() {
+		Http.Request request = Http.Request.current();
+		if (request == null)
+			return this.lookUpUser();
+		if (!request.args.containsKey(CURRENT_USER))
+			request.args.put(CURRENT_USER, this.lookUpUser());
+		return (User) request.args.get(CURRENT_USER);
+	}
+
+	private User lookUpUser() {
+		if (!Security.isConnected())
+			return null;
 		return Database.get().users().get(Security.connected());
 	}
 }
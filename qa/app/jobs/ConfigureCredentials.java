@@ -0,0 +1,29 @@
+package jobs;
+
+import models.Credentials;
+import models.Pbkdf2Credentials;
+import play.Logger;
+import play.Play;
+import play.jobs.Job;
+import play.jobs.OnApplicationStart;
+
+/**
+ * Switches to a stronger password hash, if configured. Passwords hashed
+ * before are upgraded as their users log in.
+ */
+@OnApplicationStart
+public class ConfigureCredentials extends Job {
+
+	@Override
+	public void doJob() throws Exception {
+		if (!"pbkdf2".equals(Play.configuration.getProperty("auth.hash",
+				"sha1").trim()))
+			return;
+
+		int iterations = Integer.parseInt(Play.configuration.getProperty(
+				"auth.pbkdf2.iterations", "10000").trim());
+		Credentials.swapWith(new Pbkdf2Credentials(iterations));
+		Logger.info("Hashing passwords with PBKDF2 (%d iterations)",
+				iterations);
+	}
+}
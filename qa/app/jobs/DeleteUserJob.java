@@ -0,0 +1,153 @@
+package jobs;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import models.User;
+import play.Logger;
+import play.jobs.Job;
+
+/**
+ * Deletes (or anonymizes) a user in the background.
+ *
+ * The user is hidden right away (see {@link User#hide()}), so that he can no
+ * longer log in, whereas his items are removed in batches of
+ * {@link #BATCH_SIZE}, so that deleting a heavy user neither times out the
+ * request nor keeps others waiting for long.
+ *
+ * Jobs are tracked by the id of the user being deleted (as his name might be
+ * taken again right away) and forgotten {@link #KEEP_FINISHED} ms after they
+ * have finished.
+ */
+public class DeleteUserJob extends Job {
+
+	/** The number of items deleted (or anonymized) at a time. */
+	public static final int BATCH_SIZE = 100;
+
+	/** How long the status of a finished job is kept (in ms). */
+	public static final long KEEP_FINISHED = 60 * 60 * 1000;
+
+	private static final ConcurrentHashMap<Integer, DeleteUserJob> jobs = new ConcurrentHashMap<Integer, DeleteUserJob>();
+
+	private final User user;
+	private final boolean anonymize;
+	private final int total;
+	private final AtomicInteger processed = new AtomicInteger();
+	private volatile long finished;
+
+	private DeleteUserJob(User user, boolean anonymize) {
+		this.user = user;
+		this.anonymize = anonymize;
+		this.total = user.countQuestions() + user.countAnswers()
+				+ user.countComments() + user.countVotes();
+	}
+
+	/**
+	 * Hides a user and starts deleting his items.
+	 *
+	 * @param user
+	 *            the user to delete
+	 * @param anonymize
+	 *            whether to keep his questions and answers (anonymously)
+	 * @return the running job
+	 */
+	public static DeleteUserJob start(User user, boolean anonymize) {
+		DeleteUserJob job = prepare(user, anonymize);
+		job.now();
+		return job;
+	}
+
+	/**
+	 * Hides a user and sets up the job for deleting his items without
+	 * starting it (e.g. for running it in the current thread).
+	 *
+	 * @param user
+	 *            the user to delete
+	 * @param anonymize
+	 *            whether to keep his questions and answers (anonymously)
+	 * @return the job, yet to be run
+	 */
+	public static DeleteUserJob prepare(User user, boolean anonymize) {
+		forgetFinished();
+		DeleteUserJob job = new DeleteUserJob(user, anonymize);
+		user.hide();
+		jobs.put(user.getID(), job);
+		return job;
+	}
+
+	/**
+	 * @param id
+	 *            the id of a deleted user
+	 * @return the job deleting him or <code>null</code> if there is none
+	 *         (anymore)
+	 */
+	public static DeleteUserJob get(int id) {
+		forgetFinished();
+		return jobs.get(id);
+	}
+
+	private static void forgetFinished() {
+		long before = System.currentTimeMillis() - KEEP_FINISHED;
+		for (Iterator<DeleteUserJob> it = jobs.values().iterator(); it
+				.hasNext();) {
+			DeleteUserJob job = it.next();
+			if (!job.isRunning() && job.finished < before)
+				it.remove();
+		}
+	}
+
+	@Override
+	public void doJob() throws Exception {
+		try {
+			int count;
+			if (this.anonymize)
+				while ((count = this.user.anonymizeItems(BATCH_SIZE, true,
+						false)) > 0)
+					this.processed.addAndGet(count);
+			while ((count = this.user.deleteItems(BATCH_SIZE)) > 0)
+				this.processed.addAndGet(count);
+			Logger.info("Deleted user %s (%d items)", this.user.getName(),
+					this.processed.get());
+		} finally {
+			this.finished = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * @return the user being deleted
+	 */
+	public User getUser() {
+		return this.user;
+	}
+
+	/**
+	 * @return whether there are items left to delete
+	 */
+	public boolean isRunning() {
+		return this.finished == 0;
+	}
+
+	/**
+	 * @return the number of items deleted (or anonymized) so far
+	 */
+	public int getProcessed() {
+		return this.processed.get();
+	}
+
+	/**
+	 * @return the number of items to delete (or anonymize)
+	 */
+	public int getTotal() {
+		return this.total;
+	}
+
+	/**
+	 * @return the percentage of items deleted (or anonymized) so far
+	 */
+	public int getProgress() {
+		if (this.total == 0)
+			return this.isRunning() ? 0 : 100;
+		return Math.min(100, 100 * this.getProcessed() / this.total);
+	}
+}
@@ -0,0 +1,27 @@
+package jobs;
+
+import models.SearchEngine.SearchIndex;
+import play.Logger;
+import play.jobs.Every;
+import play.jobs.Job;
+
+/**
+ * Periodically writes newly indexed questions to a new search index segment
+ * and merges the segments once there are too many of them.
+ */
+@Every("1min")
+public class FlushSearchIndex extends Job {
+
+	@Override
+	public void doJob() throws Exception {
+		SearchIndex index = SearchIndex.get();
+		if (!index.isPersistent())
+			return;
+
+		int flushed = index.flush();
+		if (flushed > 0)
+			Logger.info("Flushed %d questions to the search index", flushed);
+		if (index.mergeIfNeeded())
+			Logger.info("Merged search index into %s", index.segments());
+	}
+}
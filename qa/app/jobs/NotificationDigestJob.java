@@ -0,0 +1,71 @@
+package jobs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import models.Notification;
+import models.User;
+import models.database.Database;
+import notifiers.Mails;
+import play.Logger;
+import play.Play;
+import play.jobs.Every;
+import play.jobs.Job;
+
+/**
+ * Periodically mails every user a single digest of the unread notifications
+ * added since the last digest, so that many answers in a short time don't
+ * lead to many mails.
+ *
+ * The users are gone through in batches of {@link #BATCH_SIZE}, and at most
+ * <code>notifications.digest.rate</code> mails are sent per second, so that
+ * the mail queue isn't flooded.
+ */
+@Every("1h")
+public class NotificationDigestJob extends Job {
+
+	/** The number of users whose digests are gathered at a time. */
+	public static final int BATCH_SIZE = 100;
+
+	private int sent;
+
+	@Override
+	public void doJob() throws Exception {
+		int rate = Integer.parseInt(Play.configuration.getProperty(
+				"notifications.digest.rate", "10").trim());
+		long interval = 1000 / Math.max(1, rate);
+
+		List<User> users = new ArrayList<User>(Database.get().users().all());
+		this.sent = 0;
+		long next = System.currentTimeMillis();
+		for (int i = 0; i < users.size(); i += BATCH_SIZE) {
+			for (User user : users.subList(i, Math.min(i + BATCH_SIZE, users
+					.size()))) {
+				if (user.getEmail() == null)
+					continue;
+				List<Notification> notifications = user
+						.getNotificationsForDigest();
+				if (notifications.isEmpty())
+					continue;
+
+				long wait = next - System.currentTimeMillis();
+				if (wait > 0)
+					Thread.sleep(wait);
+				next = System.currentTimeMillis() + interval;
+
+				Mails.digest(user, notifications);
+				user.setDigestCursor(notifications.get(0).getSequence());
+				this.sent++;
+			}
+		}
+		if (this.sent > 0)
+			Logger.info("Sent %d notification digests", this.sent);
+	}
+
+	/**
+	 * @return the number of digests sent by the last run
+	 */
+	public int getSent() {
+		return this.sent;
+	}
+}
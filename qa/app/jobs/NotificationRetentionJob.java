@@ -0,0 +1,99 @@
+package jobs;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import models.SystemInformation;
+import models.User;
+import models.database.Database;
+import play.Logger;
+import play.Play;
+import play.jobs.Every;
+import play.jobs.Job;
+
+/**
+ * Periodically deletes notifications which are older than
+ * <code>notifications.retention.maxAge</code> days or exceed
+ * <code>notifications.retention.maxCount</code> per user.
+ *
+ * The users are processed in batches of {@link #BATCH_SIZE}, several batches
+ * at a time.
+ */
+@Every("1h")
+public class NotificationRetentionJob extends Job {
+
+	/** The number of users processed by a single task. */
+	public static final int BATCH_SIZE = 100;
+
+	private int reclaimed;
+
+	@Override
+	public void doJob() throws Exception {
+		int maxAge = Integer.parseInt(Play.configuration.getProperty(
+				"notifications.retention.maxAge", "30").trim());
+		int maxCount = Integer.parseInt(Play.configuration.getProperty(
+				"notifications.retention.maxCount", "200").trim());
+		long started = System.currentTimeMillis();
+		this.reclaimed = this.expire(new Date(SystemInformation.get().now()
+				.getTime()
+				- maxAge * 24L * 60 * 60 * 1000), maxCount);
+
+		// the heap in use is only read, as forcing a collection would stop
+		// the whole application
+		if (this.reclaimed > 0)
+			Logger.info("Deleted %d expired notifications in %d ms (%d KB heap "
+					+ "in use)", this.reclaimed, System.currentTimeMillis()
+					- started, ManagementFactory.getMemoryMXBean()
+					.getHeapMemoryUsage().getUsed() / 1024);
+	}
+
+	/**
+	 * @return the number of notifications deleted by the last run
+	 */
+	public int getReclaimed() {
+		return this.reclaimed;
+	}
+
+	/**
+	 * Deletes old notifications of all users.
+	 *
+	 * @param before
+	 *            the date before which notifications expire
+	 * @param maxCount
+	 *            the maximal number of notifications to keep per user
+	 * @return the number of deleted notifications
+	 */
+	public int expire(final Date before, final int maxCount) throws Exception {
+		List<User> users = new ArrayList<User>(Database.get().users().all());
+		List<Future<Integer>> batches = new ArrayList<Future<Integer>>();
+		ExecutorService pool = Executors.newFixedThreadPool(Runtime
+				.getRuntime().availableProcessors());
+		try {
+			for (int i = 0; i < users.size(); i += BATCH_SIZE) {
+				final List<User> batch = users.subList(i, Math.min(i
+						+ BATCH_SIZE, users.size()));
+				batches.add(pool.submit(new Callable<Integer>() {
+					public Integer call() {
+						int expired = 0;
+						for (User user : batch)
+							expired += user.expireNotifications(before,
+									maxCount);
+						return expired;
+					}
+				}));
+			}
+			int expired = 0;
+			for (Future<Integer> batch : batches)
+				expired += batch.get();
+			return expired;
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
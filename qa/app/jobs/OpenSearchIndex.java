@@ -0,0 +1,29 @@
+package jobs;
+
+import java.io.File;
+
+import models.SearchEngine.SearchIndex;
+import play.Logger;
+import play.Play;
+import play.jobs.Job;
+import play.jobs.OnApplicationStart;
+
+/**
+ * Memory-maps the persisted search index segments at startup, so searching
+ * works right away without re-indexing all questions.
+ */
+@OnApplicationStart
+public class OpenSearchIndex extends Job {
+
+	@Override
+	public void doJob() throws Exception {
+		String path = Play.configuration.getProperty("search.index.dir");
+		if (path == null || path.trim().length() == 0)
+			return;
+
+		File directory = Play.getFile(path.trim());
+		SearchIndex.get().open(directory);
+		Logger.info("Opened search index in %s: %s", directory,
+				SearchIndex.get().segments());
+	}
+}
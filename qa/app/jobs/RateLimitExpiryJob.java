@@ -0,0 +1,18 @@
+package jobs;
+
+import models.RateLimiter;
+import play.jobs.Every;
+import play.jobs.Job;
+
+/**
+ * Periodically forgets about clients who haven't posted or voted recently, so
+ * that the rate limiter only keeps track of the active ones.
+ */
+@Every("1min")
+public class RateLimitExpiryJob extends Job {
+
+	@Override
+	public void doJob() throws Exception {
+		RateLimiter.get().expire();
+	}
+}
@@ -0,0 +1,172 @@
+package jobs;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import models.Question;
+import models.SearchEngine.SearchIndex;
+import models.database.Database;
+import play.Logger;
+import play.jobs.Job;
+
+/**
+ * Rebuilds the search index from scratch, e.g. after the tokenizer changed.
+ *
+ * The questions are split up across a {@link ForkJoinPool}, every task builds
+ * a partial index for its share of them and the partial indexes are merged
+ * while joining. The result then atomically replaces the current index (see
+ * {@link SearchIndex#replaceWith}), so searching keeps working on the old
+ * index during the whole rebuild.
+ */
+public class ReindexJob extends Job {
+
+	/** The number of questions a single task indexes without splitting. */
+	private static final int BATCH_SIZE = 256;
+
+	private static volatile ReindexJob last;
+
+	private final AtomicInteger indexed = new AtomicInteger();
+	private volatile int total;
+	private final long started = System.currentTimeMillis();
+	private volatile long finished;
+
+	/**
+	 * Starts a rebuild of the search index, unless one is already running.
+	 *
+	 * @return the running job
+	 */
+	public static synchronized ReindexJob start() {
+		if (last == null || !last.isRunning()) {
+			last = new ReindexJob();
+			last.now();
+		}
+		return last;
+	}
+
+	/**
+	 * @return the last started rebuild or <code>null</code> if there was none
+	 */
+	public static ReindexJob last() {
+		return last;
+	}
+
+	@Override
+	public void doJob() throws Exception {
+		try {
+			List<Question> all = Database.get().questions().all();
+			this.total = all.size();
+
+			ForkJoinPool pool = new ForkJoinPool();
+			SearchIndex rebuilt;
+			try {
+				rebuilt = pool.invoke(new IndexTask(all, 0, all.size()));
+			} finally {
+				pool.shutdown();
+			}
+
+			SearchIndex.get().replaceWith(rebuilt);
+
+			// catch up with the questions added or removed in the meantime
+			HashMap<Integer, Question> gone = new HashMap<Integer, Question>();
+			for (Question question : all)
+				gone.put(question.id(), question);
+			for (Question question : Database.get().questions().all())
+				if (gone.remove(question.id()) == null)
+					rebuilt.add(question.id(), question.content());
+			// including their words from the spelling dictionary
+			for (Question question : gone.values())
+				rebuilt.remove(question.id(), question.content());
+			Logger.info("Reindexed %d questions in %d ms (%.1f per second)",
+					this.total, this.getDuration(), this.getThroughput());
+		} finally {
+			this.finished = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * @return whether the rebuild hasn't finished yet
+	 */
+	public boolean isRunning() {
+		return this.finished == 0;
+	}
+
+	/**
+	 * @return the number of questions indexed so far
+	 */
+	public int getIndexed() {
+		return this.indexed.get();
+	}
+
+	/**
+	 * @return the number of questions to index (0 until it's known)
+	 */
+	public int getTotal() {
+		return this.total;
+	}
+
+	/**
+	 * @return the percentage of questions indexed so far
+	 */
+	public int getProgress() {
+		if (this.total == 0)
+			return this.isRunning() ? 0 : 100;
+		return 100 * this.getIndexed() / this.total;
+	}
+
+	/**
+	 * @return the milliseconds the rebuild has been running for (or took)
+	 */
+	public long getDuration() {
+		long end = this.isRunning() ? System.currentTimeMillis()
+				: this.finished;
+		return end - this.started;
+	}
+
+	/**
+	 * @return the number of questions indexed per second
+	 */
+	public double getThroughput() {
+		return 1000.0 * this.getIndexed() / Math.max(1, this.getDuration());
+	}
+
+	/**
+	 * Indexes a range of questions, splitting it in half as long as it's
+	 * larger than {@link ReindexJob#BATCH_SIZE}.
+	 */
+	private class IndexTask extends RecursiveTask<SearchIndex> {
+
+		private final List<Question> questions;
+		private final int from;
+		private final int to;
+
+		public IndexTask(List<Question> questions, int from, int to) {
+			this.questions = questions;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected SearchIndex compute() {
+			if (this.to - this.from <= BATCH_SIZE) {
+				SearchIndex index = new SearchIndex();
+				for (int i = this.from; i < this.to; i++) {
+					Question question = this.questions.get(i);
+					index.add(question.id(), question.content());
+					ReindexJob.this.indexed.incrementAndGet();
+				}
+				return index;
+			}
+			int middle = (this.from + this.to) >>> 1;
+			IndexTask left = new IndexTask(this.questions, this.from, middle);
+			left.fork();
+			SearchIndex index = new IndexTask(this.questions, middle, this.to)
+					.compute();
+			SearchIndex merged = left.join();
+			merged.addAll(index);
+			return merged;
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package jobs;
+
+import models.NotificationDispatcher;
+import models.QueuedNotificationDispatcher;
+import play.Logger;
+import play.Play;
+import play.jobs.Job;
+import play.jobs.OnApplicationStart;
+
+/**
+ * Makes watchers get notified in the background, so that posting answers
+ * doesn't depend on how many users watch a question.
+ */
+@OnApplicationStart
+public class StartNotificationDispatcher extends Job {
+
+	@Override
+	public void doJob() throws Exception {
+		if (!"true".equals(Play.configuration.getProperty(
+				"notifications.async", "false").trim()))
+			return;
+
+		int capacity = Integer.parseInt(Play.configuration.getProperty(
+				"notifications.queue.size", "1024").trim());
+		NotificationDispatcher.swapWith(new QueuedNotificationDispatcher(
+				capacity));
+		Logger.info("Dispatching notifications in the background (queue size %d)",
+				capacity);
+	}
+}
@@ -0,0 +1,35 @@
+package jobs;
+
+import models.RateLimiter;
+import play.Logger;
+import play.Play;
+import play.jobs.Job;
+import play.jobs.OnApplicationStart;
+
+/**
+ * Sets up the configured limits for posting and voting.
+ */
+@OnApplicationStart
+public class StartRateLimiter extends Job {
+
+	@Override
+	public void doJob() throws Exception {
+		int userBurst = this.limit("ratelimit.user.burst",
+				RateLimiter.DEFAULT_USER_BURST);
+		int userRate = this.limit("ratelimit.user.perMinute",
+				RateLimiter.DEFAULT_USER_PER_MINUTE);
+		int ipBurst = this.limit("ratelimit.ip.burst",
+				RateLimiter.DEFAULT_IP_BURST);
+		int ipRate = this.limit("ratelimit.ip.perMinute",
+				RateLimiter.DEFAULT_IP_PER_MINUTE);
+		RateLimiter.swapWith(new RateLimiter(userBurst, userRate, ipBurst,
+				ipRate));
+		Logger.info("Limiting writes to %d per minute and user, %d per "
+				+ "minute and IP address", userRate, ipRate);
+	}
+
+	private int limit(String key, int fallback) {
+		return Integer.parseInt(Play.configuration.getProperty(key,
+				String.valueOf(fallback)).trim());
+	}
+}
@@ -0,0 +1,299 @@
+package jobs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import models.Answer;
+import models.Entry;
+import models.Question;
+import models.User;
+import models.Vote;
+import models.database.Database;
+import play.Logger;
+import play.jobs.Every;
+import play.jobs.Job;
+
+/**
+ * Periodically looks for rings of users voting each other up and blocks them.
+ *
+ * All upvotes are collected into a weighted user-by-user graph (voter to
+ * author), stored as primitive adjacency arrays in compressed-row form so
+ * that even millions of votes fit into a few arrays. Two users are
+ * suspicious if both have given the other at least {@link #MIN_VOTES}
+ * upvotes. The connected clusters of such reciprocal pairs with at least
+ * {@link #MIN_RING_SIZE} members, in which at least {@link #MIN_DENSITY} of
+ * all possible pairs vote for each other, are voting rings.
+ *
+ * Sorting the adjacency rows and finding the reciprocal pairs is split up
+ * into batches of {@link #BATCH_SIZE} users processed in parallel.
+ */
+@Every("6h")
+public class VotingRingJob extends Job {
+
+	/** The minimal number of upvotes in both directions for a suspicious pair. */
+	public static final int MIN_VOTES = 3;
+	/** The minimal number of users in a voting ring. */
+	public static final int MIN_RING_SIZE = 3;
+	/** The minimal share of suspicious pairs among all pairs in a ring. */
+	public static final double MIN_DENSITY = 0.5;
+	/** The number of users processed by a single task. */
+	private static final int BATCH_SIZE = 1024;
+
+	private List<List<User>> rings = new ArrayList<List<User>>();
+
+	@Override
+	public void doJob() throws Exception {
+		long started = System.currentTimeMillis();
+		this.rings = this.findRings();
+		int blocked = 0;
+		for (List<User> ring : this.rings)
+			for (User user : ring)
+				if (!user.isBlocked()) {
+					user.setStatusMessage("User is part of a voting ring");
+					user.setBlocked(true);
+					blocked++;
+				}
+		Logger.info("Found %d voting rings in %d ms, blocked %d users",
+				this.rings.size(), System.currentTimeMillis() - started,
+				blocked);
+	}
+
+	/**
+	 * @return the voting rings found by the last run
+	 */
+	public List<List<User>> getRings() {
+		return this.rings;
+	}
+
+	/**
+	 * Builds the vote graph and finds all voting rings in it.
+	 *
+	 * @return the members of all voting rings
+	 */
+	public List<List<User>> findRings() throws Exception {
+		final List<User> users = new ArrayList<User>(Database.get().users()
+				.all());
+		HashMap<User, Integer> index = new HashMap<User, Integer>();
+		for (int i = 0; i < users.size(); i++)
+			index.put(users.get(i), i);
+
+		// request threads keep posting and voting meanwhile: questions,
+		// answers and votes are all copied under their owner's lock (see
+		// IDTable#snapshot() and Entry#getVotes())
+		EdgeList edges = new EdgeList();
+		for (Question question : Database.get().questions().all()) {
+			edges.addUpvotes(question, index);
+			for (Answer answer : question.answers())
+				edges.addUpvotes(answer, index);
+		}
+
+		final VoteGraph graph = new VoteGraph(users.size(), edges);
+		List<long[]> pairs = new ArrayList<long[]>();
+		ExecutorService pool = Executors.newFixedThreadPool(Runtime
+				.getRuntime().availableProcessors());
+		try {
+			List<Future<?>> sorted = new ArrayList<Future<?>>();
+			for (int i = 0; i < users.size(); i += BATCH_SIZE) {
+				final int from = i, to = Math.min(i + BATCH_SIZE, users.size());
+				sorted.add(pool.submit(new Runnable() {
+					public void run() {
+						graph.compact(from, to);
+					}
+				}));
+			}
+			for (Future<?> batch : sorted)
+				batch.get();
+
+			List<Future<long[]>> found = new ArrayList<Future<long[]>>();
+			for (int i = 0; i < users.size(); i += BATCH_SIZE) {
+				final int from = i, to = Math.min(i + BATCH_SIZE, users.size());
+				found.add(pool.submit(new Callable<long[]>() {
+					public long[] call() {
+						return graph.reciprocalPairs(from, to, MIN_VOTES);
+					}
+				}));
+			}
+			for (Future<long[]> batch : found)
+				pairs.add(batch.get());
+		} finally {
+			pool.shutdown();
+		}
+
+		return this.clusters(users, pairs);
+	}
+
+	/**
+	 * Groups the suspicious pairs into connected clusters (using union-find)
+	 * and keeps the large and dense enough ones.
+	 */
+	private List<List<User>> clusters(List<User> users, List<long[]> pairs) {
+		int[] parent = new int[users.size()];
+		for (int i = 0; i < parent.length; i++)
+			parent[i] = i;
+		for (long[] batch : pairs)
+			for (long pair : batch)
+				union(parent, (int) (pair >>> 32), (int) pair);
+
+		HashMap<Integer, List<Integer>> members = new HashMap<Integer, List<Integer>>();
+		HashMap<Integer, Integer> links = new HashMap<Integer, Integer>();
+		for (long[] batch : pairs)
+			for (long pair : batch) {
+				int root = find(parent, (int) pair);
+				Integer count = links.get(root);
+				links.put(root, count == null ? 1 : count + 1);
+			}
+		for (int root : links.keySet())
+			members.put(root, new ArrayList<Integer>());
+		for (int i = 0; i < parent.length; i++) {
+			List<Integer> cluster = members.get(find(parent, i));
+			if (cluster != null)
+				cluster.add(i);
+		}
+
+		List<List<User>> rings = new ArrayList<List<User>>();
+		for (int root : members.keySet()) {
+			List<Integer> cluster = members.get(root);
+			long size = cluster.size();
+			if (size < MIN_RING_SIZE
+					|| links.get(root) < MIN_DENSITY * size * (size - 1) / 2)
+				continue;
+			List<User> ring = new ArrayList<User>();
+			for (int i : cluster)
+				ring.add(users.get(i));
+			rings.add(ring);
+		}
+		return rings;
+	}
+
+	private static int find(int[] parent, int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	private static void union(int[] parent, int a, int b) {
+		a = find(parent, a);
+		b = find(parent, b);
+		if (a != b)
+			parent[Math.max(a, b)] = Math.min(a, b);
+	}
+
+	/**
+	 * A growing list of (voter, author) edges.
+	 */
+	private static class EdgeList {
+		int[] voters = new int[1024];
+		int[] authors = new int[1024];
+		int size;
+
+		void addUpvotes(Entry entry, HashMap<User, Integer> index) {
+			Integer author = index.get(entry.owner());
+			if (author == null)
+				return;
+			for (Vote vote : entry.getVotes()) {
+				Integer voter = index.get(vote.owner());
+				if (!vote.up() || voter == null || voter.equals(author))
+					continue;
+				if (this.size == this.voters.length) {
+					this.voters = Arrays.copyOf(this.voters, 2 * this.size);
+					this.authors = Arrays.copyOf(this.authors, 2 * this.size);
+				}
+				this.voters[this.size] = voter;
+				this.authors[this.size] = author;
+				this.size++;
+			}
+		}
+	}
+
+	/**
+	 * The weighted vote graph in compressed-row form: the authors voted up by
+	 * user <code>u</code> are <code>targets[offsets[u]]</code> to
+	 * <code>targets[offsets[u] + degrees[u] - 1]</code> (sorted, once
+	 * compacted) and <code>weights</code> holds the number of upvotes for
+	 * each of them.
+	 */
+	private static class VoteGraph {
+		final int[] offsets;
+		final int[] degrees;
+		final int[] targets;
+		final int[] weights;
+
+		VoteGraph(int users, EdgeList edges) {
+			this.offsets = new int[users + 1];
+			this.degrees = new int[users];
+			for (int i = 0; i < edges.size; i++)
+				this.offsets[edges.voters[i] + 1]++;
+			for (int u = 0; u < users; u++)
+				this.offsets[u + 1] += this.offsets[u];
+			this.targets = new int[edges.size];
+			this.weights = new int[edges.size];
+			for (int i = 0; i < edges.size; i++) {
+				int u = edges.voters[i];
+				this.targets[this.offsets[u] + this.degrees[u]++] = edges.authors[i];
+			}
+		}
+
+		/**
+		 * Sorts the rows of the given users and merges duplicate targets into
+		 * weights.
+		 */
+		void compact(int from, int to) {
+			for (int u = from; u < to; u++) {
+				int start = this.offsets[u], end = start + this.degrees[u];
+				Arrays.sort(this.targets, start, end);
+				int last = start - 1;
+				for (int i = start; i < end; i++) {
+					if (last >= start && this.targets[last] == this.targets[i])
+						this.weights[last]++;
+					else {
+						last++;
+						this.targets[last] = this.targets[i];
+						this.weights[last] = 1;
+					}
+				}
+				this.degrees[u] = last - start + 1;
+			}
+		}
+
+		/**
+		 * @return the number of upvotes by <code>u</code> for <code>v</code>
+		 */
+		int weight(int u, int v) {
+			int start = this.offsets[u];
+			int i = Arrays.binarySearch(this.targets, start, start
+					+ this.degrees[u], v);
+			return i < 0 ? 0 : this.weights[i];
+		}
+
+		/**
+		 * Finds the pairs of users (with the first one in the given range)
+		 * who've both voted up the other at least <code>minVotes</code> times.
+		 *
+		 * @return the pairs, each one packed into a long
+		 */
+		long[] reciprocalPairs(int from, int to, int minVotes) {
+			long[] pairs = new long[16];
+			int count = 0;
+			for (int u = from; u < to; u++)
+				for (int i = this.offsets[u]; i < this.offsets[u]
+						+ this.degrees[u]; i++) {
+					int v = this.targets[i];
+					if (v <= u || this.weights[i] < minVotes
+							|| this.weight(v, u) < minVotes)
+						continue;
+					if (count == pairs.length)
+						pairs = Arrays.copyOf(pairs, 2 * count);
+					pairs[count++] = ((long) u << 32) | v;
+				}
+			return Arrays.copyOf(pairs, count);
+		}
+	}
+}
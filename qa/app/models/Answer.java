@@ -52,7 +52,8 @@ public class Answer extends Entry {
 	}
 
 	/**
-	 * Unregisters all {@link Vote}s, {@link Comments} and itself.
+	 * Unregisters all {@link Vote}s, {@link Comments}, {@link Notification}s
+	 * and itself.
 	 */
 	@Override
 	public void unregister() {
@@ -61,6 +62,10 @@ public class Answer extends Entry {
 		}
 		this.comments = new IDTable<Comment>();
 
+		for (Notification notification : this.unregisterNotifications())
+			if (notification.owner() != null)
+				notification.owner().inbox().answerDeleted(notification, this);
+
 		this.question.unregister(this);
 		this.unregisterVotes();
 		this.unregisterUser();
@@ -75,7 +80,7 @@ public class Answer extends Entry {
 	public Question getQuestion() {
 		// if this answer has been removed from its question, no longer
 		// claim to belong to a question
-		if (!this.question.hasAnswer(this))
+		if (!this.isRegistered())
 			return null;
 		return this.question;
 	}
@@ -106,7 +111,7 @@ public class Answer extends Entry {
 	 * @return {@link Collection} of {@link Comments}
 	 */
 	public List<Comment> comments() {
-		List<Comment> list = new ArrayList<Comment>(comments.values());
+		List<Comment> list = new ArrayList<Comment>(comments.snapshot());
 		Collections.sort(list);
 		return Collections.unmodifiableList(list);
 	}
@@ -0,0 +1,145 @@
+package models;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashes and verifies {@link User} passwords.
+ *
+ * This default implementation stores unsalted SHA-1 digests (as hex strings,
+ * see {@link User#encrypt(String)}), whereas {@link Pbkdf2Credentials} stores
+ * salted and stretched hashes. Either one verifies both kinds of hashes, so
+ * that switching to a stronger hash doesn't lock anybody out: legacy hashes
+ * are replaced on the next successful login (see {@link #needsRehash}).
+ *
+ * Digests are always compared as raw bytes in constant time, so that the time
+ * a failed login takes doesn't reveal how much of the hash was right. The
+ * SHA-1 digest is reused per thread instead of being looked up for every
+ * single login.
+ */
+public class Credentials {
+
+	private static Credentials instance = new Credentials();
+
+	private static final ThreadLocal<MessageDigest> sha1 = new ThreadLocal<MessageDigest>() {
+		@Override
+		protected MessageDigest initialValue() {
+			try {
+				return MessageDigest.getInstance("SHA-1");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	};
+
+	/** The length of a SHA-1 digest in bytes. */
+	private static final int SHA1_LENGTH = 20;
+
+	/**
+	 * Gain access to the credential service.
+	 *
+	 * @return the service that is currently responsible.
+	 */
+	public static Credentials get() {
+		return instance;
+	}
+
+	/**
+	 * Exchanges the credential service (e.g. for one using a stronger hash).
+	 *
+	 * @param credentials
+	 *            the service to take responsibility.
+	 */
+	public static void swapWith(Credentials credentials) {
+		instance = credentials;
+	}
+
+	/**
+	 * Hashes a new password.
+	 *
+	 * @param password
+	 *            the plain password
+	 * @return the hash to store
+	 */
+	public String hash(String password) {
+		return sha1Hex(password);
+	}
+
+	/**
+	 * Checks a password against a stored hash of any supported kind.
+	 *
+	 * @param password
+	 *            the plain password
+	 * @param stored
+	 *            the stored hash
+	 * @return true if the password is right
+	 */
+	public boolean verify(String password, String stored) {
+		if (Pbkdf2Credentials.accepts(stored))
+			return Pbkdf2Credentials.verifyHash(password, stored);
+		byte[] expected = fromHex(stored, SHA1_LENGTH);
+		return expected != null
+				&& MessageDigest.isEqual(sha1(password), expected);
+	}
+
+	/**
+	 * Checks whether a stored hash should be replaced (once the plain password
+	 * is known after a successful login).
+	 *
+	 * @param stored
+	 *            the stored hash
+	 * @return true if {@link #hash} would store a different kind of hash
+	 */
+	public boolean needsRehash(String stored) {
+		return false;
+	}
+
+	/**
+	 * @return the SHA-1 digest of a password
+	 */
+	static byte[] sha1(String password) {
+		return sha1.get().digest(password.getBytes());
+	}
+
+	/**
+	 * @return the SHA-1 digest of a password as hex string (without leading
+	 *         zeroes, as it has always been stored)
+	 */
+	static String sha1Hex(String password) {
+		String hex = toHex(sha1(password));
+		int start = 0;
+		while (start < hex.length() - 1 && hex.charAt(start) == '0')
+			start++;
+		return hex.substring(start);
+	}
+
+	static String toHex(byte[] bytes) {
+		char[] hex = new char[2 * bytes.length];
+		for (int i = 0; i < bytes.length; i++) {
+			hex[2 * i] = Character.forDigit((bytes[i] >> 4) & 0xf, 16);
+			hex[2 * i + 1] = Character.forDigit(bytes[i] & 0xf, 16);
+		}
+		return new String(hex);
+	}
+
+	/**
+	 * Decodes a hex string, padding it with leading zeroes.
+	 *
+	 * @return the bytes or <code>null</code> if the string isn't valid hex
+	 *         of at most the given length
+	 */
+	static byte[] fromHex(String hex, int length) {
+		if (hex == null || hex.length() > 2 * length)
+			return null;
+		byte[] bytes = new byte[length];
+		int offset = 2 * length - hex.length();
+		for (int i = 0; i < hex.length(); i++) {
+			int digit = Character.digit(hex.charAt(i), 16);
+			if (digit < 0)
+				return null;
+			int pos = offset + i;
+			bytes[pos / 2] |= pos % 2 == 0 ? digit << 4 : digit;
+		}
+		return bytes;
+	}
+}
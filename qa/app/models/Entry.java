@@ -1,8 +1,10 @@
 package models;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * An {@link Item} which has a content and can be voted up and down.
@@ -15,6 +17,12 @@ public abstract class Entry extends Item implements Comparable {
 	private final String content;
 	private HashMap<String, Vote> votes;
 
+	/** Whether this entry hasn't been deleted yet. */
+	private boolean isRegistered = true;
+
+	/** The notifications about this entry (dropped when it's deleted). */
+	private final List<Notification> notifications = new ArrayList<Notification>();
+
 	/**
 	 * Create an <code>Entry</code>.
 	 * 
@@ -43,12 +51,77 @@ public abstract class Entry extends Item implements Comparable {
 		this.unregisterUser();
 	}
 
+	/**
+	 * Checks whether this <code>Entry</code> hasn't been deleted.
+	 * 
+	 * @return true if the entry hasn't been deleted
+	 */
+	public boolean isRegistered() {
+		return this.isRegistered;
+	}
+
+	/**
+	 * Registers a {@link Notification} about this <code>Entry</code>, so that
+	 * it gets deleted together with it.
+	 * 
+	 * @param notification the notification about this entry
+	 * @return false if this entry has already been deleted
+	 */
+	public boolean registerNotification(Notification notification) {
+		synchronized (this.notifications) {
+			if (this.isRegistered)
+				this.notifications.add(notification);
+			return this.isRegistered;
+		}
+	}
+
+	/**
+	 * Unregisters a deleted {@link Notification} about this
+	 * <code>Entry</code>.
+	 * 
+	 * @param notification the deleted notification
+	 */
+	public void unregisterNotification(Notification notification) {
+		synchronized (this.notifications) {
+			this.notifications.remove(notification);
+		}
+	}
+
+	/**
+	 * @param notification a notification
+	 * @return whether the notification is (also) about this <code>Entry</code>
+	 */
+	public boolean hasNotification(Notification notification) {
+		synchronized (this.notifications) {
+			return this.notifications.contains(notification);
+		}
+	}
+
+	/**
+	 * Marks this <code>Entry</code> as deleted, so that no more
+	 * {@link Notification}s about it can be registered.
+	 * 
+	 * @return the notifications which have been registered so far
+	 */
+	protected List<Notification> unregisterNotifications() {
+		synchronized (this.notifications) {
+			this.isRegistered = false;
+			List<Notification> notifications = new ArrayList<Notification>(
+					this.notifications);
+			this.notifications.clear();
+			return notifications;
+		}
+	}
+
 	/**
 	 * Delete all {@link Vote}s if the <code>Entry</code> gets deleted.
 	 */
 	protected void unregisterVotes() {
-		Collection<Vote> votes = this.votes.values();
-		this.votes = new HashMap();
+		Collection<Vote> votes;
+		synchronized (this) {
+			votes = this.votes.values();
+			this.votes = new HashMap();
+		}
 		for (Vote vote : votes)
 			vote.unregister();
 	}
@@ -58,7 +131,7 @@ public abstract class Entry extends Item implements Comparable {
 	 * 
 	 * @param vote the {@link Vote} to unregister
 	 */
-	public void unregister(Vote vote) {
+	public synchronized void unregister(Vote vote) {
 		this.votes.remove(vote.owner().getName());
 	}
 
@@ -115,7 +188,7 @@ public abstract class Entry extends Item implements Comparable {
 	 * @param up boolean whether there is a <code>Vote</code> to this <code>Entry</code> or not
 	 * @return counter number of <code>Votes</code>
 	 */
-	private int countVotes(boolean up) {
+	private synchronized int countVotes(boolean up) {
 		int counter = 0;
 		for (Vote vote : this.votes.values())
 			if (vote.up() == up)
@@ -152,10 +225,17 @@ public abstract class Entry extends Item implements Comparable {
 	private Vote vote(User user, boolean up) {
 		if (user == this.owner())
 			return null;
-		if (this.votes.containsKey(user.getName()))
-			this.votes.get(user.getName()).unregister();
+		Vote previous;
+		synchronized (this) {
+			previous = this.votes.get(user.getName());
+		}
+		if (previous != null)
+			previous.unregister();
 		Vote vote = new Vote(user, this, up);
-		this.votes.put(user.getName(), vote);
+		synchronized (this) {
+			this.votes.put(user.getName(), vote);
+		}
+		user.registerUpvote(vote);
 		return vote;
 	}
 	
@@ -181,10 +261,10 @@ public abstract class Entry extends Item implements Comparable {
 	/**
 	 * Get all <code>Votes</code>.
 	 * 
-	 * @return votes
+	 * @return a copy of the votes, safe to iterate while others are voting
 	 */
-	public Collection<Vote> getVotes() {
-		return votes.values();
+	public synchronized Collection<Vote> getVotes() {
+		return new ArrayList<Vote>(this.votes.values());
 	}
 	
 	public String toString() {
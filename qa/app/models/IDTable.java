@@ -1,11 +1,18 @@
 package models;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * A Map of Objects with IDs.
- * 
+ *
+ * The table is synchronized, so that e.g. background jobs can look at all
+ * questions or answers while request threads keep adding and removing them.
+ * Iterating goes over a snapshot (see {@link #snapshot()}), whereas the views
+ * of the underlying map mustn't be used while the table might be changed.
+ *
  * @param <E> Class to collect
  */
 public class IDTable<E> extends HashMap<Integer, E> implements Iterable<E> {
@@ -15,24 +22,51 @@ public class IDTable<E> extends HashMap<Integer, E> implements Iterable<E> {
 		this.id = 1;
 	}
 
-	public int nextID() {
+	public synchronized int nextID() {
 		return this.id;
 	}
 
-	public int add(E o) {
+	public synchronized int add(E o) {
 		this.put(this.id, o);
 		return this.id++;
 	}
 
-	public void remove(int key) {
+	public synchronized void remove(int key) {
 		this.remove((Object) key);
 	}
 
+	@Override
+	public synchronized E get(Object key) {
+		return super.get(key);
+	}
+
+	@Override
+	public synchronized E remove(Object key) {
+		return super.remove(key);
+	}
+
+	@Override
+	public synchronized int size() {
+		return super.size();
+	}
+
+	@Override
+	public synchronized void clear() {
+		super.clear();
+	}
+
+	/**
+	 * @return a consistent copy of all objects in the table
+	 */
+	public synchronized List<E> snapshot() {
+		return new ArrayList<E>(this.values());
+	}
+
 	public Iterator<E> iterator() {
-		return this.values().iterator();
+		return this.snapshot().iterator();
 	}
 
-	public boolean contains(E o) {
+	public synchronized boolean contains(E o) {
 		return this.containsValue(o);
 	}
 }
@@ -0,0 +1,242 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Ranks all registered {@link User}s by their reputation.
+ *
+ * The users are kept in a balanced search tree (a treap) ordered by
+ * reputation, where every node knows the size of its subtree. Updating a
+ * user's reputation, looking up his rank and getting a page of the
+ * leaderboard thus all take logarithmic time instead of sorting all users.
+ */
+public class Leaderboard {
+
+	private static Leaderboard instance = new Leaderboard();
+
+	private final HashMap<User, Node> nodes = new HashMap<User, Node>();
+	private final Random random = new Random();
+	private Node root;
+
+	/**
+	 * Gain access to the leaderboard.
+	 *
+	 * @return the leaderboard that is currently responsible.
+	 */
+	public static Leaderboard get() {
+		return instance;
+	}
+
+	/**
+	 * Exchanges the leaderboard (e.g. for testing).
+	 *
+	 * @param leaderboard
+	 *            the leaderboard to take responsibility.
+	 */
+	public static void swapWith(Leaderboard leaderboard) {
+		instance = leaderboard;
+	}
+
+	/**
+	 * Adds a user (or updates his position, if he's already ranked).
+	 *
+	 * @param user
+	 *            the user to rank
+	 */
+	public synchronized void add(User user) {
+		this.remove(user);
+		Node node = new Node(user, user.getReputation(), this.random.nextInt());
+		this.nodes.put(user, node);
+		this.root = this.insert(this.root, node);
+	}
+
+	/**
+	 * Moves a user to the position for his new reputation, if he's ranked at
+	 * all.
+	 *
+	 * @param user
+	 *            the user whose reputation has changed
+	 * @param reputation
+	 *            his new reputation
+	 */
+	public synchronized void update(User user, int reputation) {
+		Node node = this.nodes.get(user);
+		if (node == null || node.reputation == reputation)
+			return;
+		this.root = this.delete(this.root, node);
+		node.reputation = reputation;
+		node.left = node.right = null;
+		node.size = 1;
+		this.root = this.insert(this.root, node);
+	}
+
+	/**
+	 * Removes a user from the leaderboard (e.g. because he's been deleted).
+	 *
+	 * @param user
+	 *            the user to remove
+	 */
+	public synchronized void remove(User user) {
+		Node node = this.nodes.remove(user);
+		if (node != null)
+			this.root = this.delete(this.root, node);
+	}
+
+	/**
+	 * Removes all users.
+	 */
+	public synchronized void clear() {
+		this.nodes.clear();
+		this.root = null;
+	}
+
+	/**
+	 * @return the number of ranked users
+	 */
+	public synchronized int size() {
+		return size(this.root);
+	}
+
+	/**
+	 * Gets the rank of a user, i.e. 1 for the user with the highest
+	 * reputation.
+	 *
+	 * @param user
+	 *            the user to look up
+	 * @return his rank or 0 if he isn't ranked
+	 */
+	public synchronized int rankOf(User user) {
+		Node node = this.nodes.get(user);
+		if (node == null)
+			return 0;
+		int rank = 1;
+		Node current = this.root;
+		while (current != node) {
+			if (node.before(current))
+				current = current.left;
+			else {
+				rank += size(current.left) + 1;
+				current = current.right;
+			}
+		}
+		return rank + size(node.left);
+	}
+
+	/**
+	 * Gets a part of the leaderboard.
+	 *
+	 * @param offset
+	 *            the number of top ranked users to skip
+	 * @param count
+	 *            the maximal number of users to get
+	 * @return the users, highest reputation first
+	 */
+	public synchronized List<User> page(int offset, int count) {
+		List<User> users = new ArrayList<User>(Math.max(0, Math.min(count,
+				this.size() - offset)));
+		this.collect(this.root, offset, count, users);
+		return users;
+	}
+
+	private void collect(Node node, int offset, int count, List<User> users) {
+		if (node == null || users.size() >= count)
+			return;
+		int left = size(node.left);
+		if (offset < left)
+			this.collect(node.left, offset, count, users);
+		if (offset <= left && users.size() < count)
+			users.add(node.user);
+		this.collect(node.right, Math.max(0, offset - left - 1), count, users);
+	}
+
+	private Node insert(Node tree, Node node) {
+		if (tree == null)
+			return node;
+		if (node.before(tree)) {
+			tree.left = this.insert(tree.left, node);
+			if (tree.left.priority > tree.priority)
+				tree = rotateRight(tree);
+		} else {
+			tree.right = this.insert(tree.right, node);
+			if (tree.right.priority > tree.priority)
+				tree = rotateLeft(tree);
+		}
+		tree.update();
+		return tree;
+	}
+
+	private Node delete(Node tree, Node node) {
+		if (tree == node)
+			return merge(tree.left, tree.right);
+		if (node.before(tree))
+			tree.left = this.delete(tree.left, node);
+		else
+			tree.right = this.delete(tree.right, node);
+		tree.update();
+		return tree;
+	}
+
+	private static Node merge(Node left, Node right) {
+		if (left == null)
+			return right;
+		if (right == null)
+			return left;
+		if (left.priority > right.priority) {
+			left.right = merge(left.right, right);
+			left.update();
+			return left;
+		}
+		right.left = merge(left, right.left);
+		right.update();
+		return right;
+	}
+
+	private static Node rotateRight(Node node) {
+		Node left = node.left;
+		node.left = left.right;
+		left.right = node;
+		node.update();
+		return left;
+	}
+
+	private static Node rotateLeft(Node node) {
+		Node right = node.right;
+		node.right = right.left;
+		right.left = node;
+		node.update();
+		return right;
+	}
+
+	private static int size(Node node) {
+		return node == null ? 0 : node.size;
+	}
+
+	private static class Node {
+		final User user;
+		final int priority;
+		int reputation;
+		int size = 1;
+		Node left;
+		Node right;
+
+		Node(User user, int reputation, int priority) {
+			this.user = user;
+			this.reputation = reputation;
+			this.priority = priority;
+		}
+
+		/** Higher reputations come first, older users first among equals. */
+		boolean before(Node other) {
+			if (this.reputation != other.reputation)
+				return this.reputation > other.reputation;
+			return this.user.getID() < other.user.getID();
+		}
+
+		void update() {
+			this.size = size(this.left) + size(this.right) + 1;
+		}
+	}
+}
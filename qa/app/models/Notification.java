@@ -1,13 +1,33 @@
 package models;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * A notification about a (recent) change such as a newly added answer to a
  * question.
+ *
+ * As long as a notification about an answer hasn't been seen, further answers
+ * to the same question don't cause new notifications but are coalesced into
+ * it (see {@link NotificationInbox#coalesce}): it then counts all those
+ * answers and is about the most recent one of them.
+ *
+ * A notification keeps its id for good, so that links to it stay valid,
+ * whereas its sequence number is renewed whenever an answer is coalesced into
+ * it, so that it counts as the most recent one.
  */
 public class Notification extends Item implements Comparable {
 
 	/** What this notification is all about. */
-	private final Entry about;
+	private Entry about;
+
+	/** The question the answers this notification is about belong to. */
+	private final Question answered;
+
+	/** The id of the first answer this notification is about. */
+	private final int firstAnswerID;
+
+	/** The number of answers this notification is about. */
+	private int count;
 
 	/** Whether this notification has been seen by the user. */
 	protected boolean isNew;
@@ -15,22 +35,21 @@ public class Notification extends Item implements Comparable {
 	/** This notification's ID. */
 	private final int id;
 
-	/** An auto-incrementing counter for producing unique values as IDs. */
-	private static int auto_increment = 0;
+	/** The position of this notification's latest change among all changes. */
+	private int sequence;
 
 	/**
 	 * Since there's no ideal place for using an IDTable, we just count through
 	 * all notifications, assigning them an auto-incremented value as ID.
-	 * 
-	 * @return the next ID value
 	 */
-	private synchronized int autoIncrementID() {
-		return auto_increment++;
-	}
+	private static final AtomicInteger auto_increment = new AtomicInteger();
+
+	/** Counts through all changes of notifications. */
+	private static final AtomicInteger sequences = new AtomicInteger();
 
 	/**
 	 * Instantiates a new notification.
-	 * 
+	 *
 	 * @param owner
 	 *            the owner
 	 * @param about
@@ -39,32 +58,63 @@ public class Notification extends Item implements Comparable {
 	public Notification(User owner, Entry about) {
 		super(owner);
 		this.about = about;
+		this.answered = about instanceof Answer ? ((Answer) about)
+				.getQuestion() : null;
+		this.firstAnswerID = about instanceof Answer ? ((Answer) about).id()
+				: 0;
+		this.count = 1;
 		this.isNew = true;
-		this.id = autoIncrementID();
+		this.id = auto_increment.getAndIncrement();
+		this.sequence = sequences.getAndIncrement();
+		// entries might get deleted before their watchers are notified
+		if (!about.registerNotification(this))
+			return;
+		owner.inbox().add(this);
 	}
 
 	/**
 	 * Gets what the notification is all about.
-	 * 
+	 *
 	 * @return what the notification is all about.
 	 */
 	public Entry getAbout() {
 		return this.about;
 	}
 
+	/**
+	 * Gets the question this notification is about (either directly or
+	 * through an answer to it).
+	 *
+	 * @return the question
+	 */
+	public Question getQuestion() {
+		if (this.about instanceof Answer)
+			return ((Answer) this.about).getQuestion();
+		return (Question) this.about;
+	}
+
+	/**
+	 * Gets the number of answers this notification is about.
+	 *
+	 * @return the number of coalesced answers
+	 */
+	public int getCount() {
+		return this.count;
+	}
+
 	/**
 	 * Checks if the notification is very recent.
-	 * 
+	 *
 	 * @return true, if it is very recent
 	 */
 	public boolean isVeryRecent() {
 		return SystemInformation.get().now().getTime()
-				- this.timestamp().getTime() <= 5 * 60 * 1000;
+				- this.about.timestamp().getTime() <= 5 * 60 * 1000;
 	}
 
 	/**
 	 * Checks if the notification hasn't been seen yet.
-	 * 
+	 *
 	 * @return true, if it is new
 	 */
 	public boolean isNew() {
@@ -76,23 +126,110 @@ public class Notification extends Item implements Comparable {
 	 * yet deleted)
 	 */
 	public void unsetNew() {
-		this.isNew = false;
+		if (this.owner() != null)
+			this.owner().inbox().markRead(this);
+		else
+			this.isNew = false;
+	}
+
+	/**
+	 * Unregisters this notification from its owner and what it's about.
+	 */
+	@Override
+	public void unregister() {
+		if (this.owner() == null)
+			return;
+		this.detach();
+		super.unregister();
 	}
 
 	/**
 	 * Gets this notification's ID value.
-	 * 
+	 *
 	 * @return this notification's ID
 	 */
 	public int getID() {
 		return this.id;
 	}
 
+	/**
+	 * Gets the sequence number of this notification's latest change. It is
+	 * higher than the one of every notification added or changed before.
+	 *
+	 * @return this notification's sequence number
+	 */
+	public int getSequence() {
+		return this.sequence;
+	}
+
 	/**
 	 * @see java.lang.Comparable#compareTo(java.lang.Object)
 	 */
 	public int compareTo(Object o) {
 		// sort notifications most-recent one first
-		return ((Notification) o).getID() - this.id;
+		return ((Notification) o).getSequence() - this.sequence;
+	}
+
+	/**
+	 * @return the question this notification's answers belong to (or
+	 *         <code>null</code> if it's not about answers)
+	 */
+	Question answered() {
+		return this.answered;
+	}
+
+	/**
+	 * Coalesces another answer into this notification, giving it a new
+	 * sequence number so that it counts as the most recent one (called by the
+	 * inbox).
+	 *
+	 * @param answer
+	 *            the new answer
+	 * @return false if the answer has already been deleted
+	 */
+	boolean coalesce(Answer answer) {
+		if (!answer.registerNotification(this))
+			return false;
+		this.about = answer;
+		this.count++;
+		this.sequence = sequences.getAndIncrement();
+		return true;
+	}
+
+	/**
+	 * Handles the deletion of one of the answers this notification is about
+	 * (called by the inbox).
+	 *
+	 * @param answer
+	 *            the deleted answer
+	 * @return false if no answer is left to notify about
+	 */
+	boolean answerDeleted(Answer answer) {
+		this.count--;
+		if (answer != this.about)
+			return this.count > 0;
+
+		// point to the most recent answer left which has been coalesced into
+		// this notification (more recent ones are covered by newer ones)
+		Answer latest = null;
+		for (Answer other : this.answered.answers())
+			if (other != answer && other.hasNotification(this)
+					&& (latest == null || other.id() > latest.id()))
+				latest = other;
+		if (latest == null || this.count <= 0)
+			return false;
+		this.about = latest;
+		return true;
+	}
+
+	/**
+	 * Unregisters this notification from everything it's about.
+	 */
+	void detach() {
+		this.about.unregisterNotification(this);
+		if (this.count > 1)
+			for (Answer answer : this.answered.answers())
+				if (answer.id() >= this.firstAnswerID)
+					answer.unregisterNotification(this);
 	}
 }
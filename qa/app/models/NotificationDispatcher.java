@@ -0,0 +1,79 @@
+package models;
+
+import java.util.Collection;
+
+import play.Logger;
+
+/**
+ * Hands changes of an {@link IObservable} on to all its observers.
+ *
+ * This default implementation does so right away in the calling thread (as
+ * needed for testing), whereas a {@link QueuedNotificationDispatcher} does so
+ * in the background, so that e.g. posting an answer to a question with many
+ * watchers doesn't have to wait for all of them to be notified.
+ */
+public class NotificationDispatcher {
+
+	private static NotificationDispatcher instance = new NotificationDispatcher();
+
+	/**
+	 * Gain access to the dispatcher.
+	 *
+	 * @return the dispatcher that is currently responsible.
+	 */
+	public static NotificationDispatcher get() {
+		return instance;
+	}
+
+	/**
+	 * Exchanges the dispatcher (e.g. for one working in the background). The
+	 * previous dispatcher is shut down once all changes it has accepted have
+	 * been handed on.
+	 *
+	 * @param dispatcher
+	 *            the dispatcher to take responsibility.
+	 */
+	public static void swapWith(NotificationDispatcher dispatcher) {
+		NotificationDispatcher previous = instance;
+		instance = dispatcher;
+		if (previous != dispatcher)
+			previous.shutdown();
+	}
+
+	/**
+	 * Notifies all observers of a change.
+	 *
+	 * @param what
+	 *            the changed entry
+	 * @param arg
+	 *            additional information to be passed on to all observers
+	 * @param observers
+	 *            the observers to notify (must not be modified afterwards,
+	 *            as they might be notified later from a different thread)
+	 */
+	public void dispatch(IObservable what, Object arg,
+			Collection<IObserver> observers) {
+		deliver(what, arg, observers);
+	}
+
+	/**
+	 * Hands on all pending changes and releases any resources, once this
+	 * dispatcher has been replaced.
+	 */
+	protected void shutdown() {
+	}
+
+	/**
+	 * Calls {@link IObserver#observe} for all observers. An observer failing
+	 * doesn't keep the others from being notified.
+	 */
+	protected static void deliver(IObservable what, Object arg,
+			Collection<IObserver> observers) {
+		for (IObserver o : observers)
+			try {
+				o.observe(what, arg);
+			} catch (RuntimeException e) {
+				Logger.error(e, "Failed to notify %s", o);
+			}
+	}
+}
@@ -0,0 +1,362 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The {@link Notification}s of a {@link User}, ordered by sequence number
+ * (i.e. by the age of their latest change).
+ *
+ * The inbox is a ring buffer holding at most {@link #CAPACITY} notifications,
+ * dropping the oldest one when a new one arrives while it's full. It keeps
+ * track of the unread notifications and indexes all of them by id, so that
+ * neither counting the unread ones nor looking one up requires going through
+ * all of them.
+ *
+ * There's at most one unread notification per question: new answers to a
+ * question are coalesced into its unread notification, if there is one, so
+ * that the number of notifications depends on the number of watched
+ * questions rather than on the number of answers to them.
+ *
+ * Requests streaming the notifications can wait for the next one through
+ * {@link #awaitSince(int, long)} instead of polling the inbox.
+ */
+public class NotificationInbox {
+
+	/** The maximal number of notifications kept. */
+	public static final int CAPACITY = 1000;
+
+	private final Notification[] ring = new Notification[CAPACITY];
+	/** The position of the oldest notification in the ring. */
+	private int head;
+	private int size;
+	private int unread;
+	private final HashMap<Integer, Notification> byId = new HashMap<Integer, Notification>();
+	private final HashMap<Question, Notification> unreadByQuestion = new HashMap<Question, Notification>();
+	/** The requests waiting for the next notification. */
+	private final List<Waiter> waiters = new ArrayList<Waiter>();
+
+	/**
+	 * Adds a notification, dropping the oldest one if the inbox is full.
+	 *
+	 * @param notification
+	 *            the notification to add
+	 */
+	public synchronized void add(Notification notification) {
+		if (this.size == CAPACITY) {
+			Notification oldest = this.at(0);
+			this.removeAt(0);
+			oldest.detach();
+		}
+
+		// notifications usually arrive in order, so this rarely moves any
+		int pos = this.size;
+		while (pos > 0
+				&& this.at(pos - 1).getSequence() > notification.getSequence()) {
+			this.set(pos, this.at(pos - 1));
+			pos--;
+		}
+		this.set(pos, notification);
+		this.size++;
+		this.byId.put(notification.getID(), notification);
+		if (notification.isNew) {
+			this.unread++;
+			if (notification.answered() != null)
+				this.unreadByQuestion.put(notification.answered(), notification);
+		}
+
+		for (Waiter waiter : this.waiters)
+			waiter.signal();
+		this.waiters.clear();
+	}
+
+	/**
+	 * Coalesces a new answer into the unread notification about its question,
+	 * making that the most recent notification.
+	 *
+	 * @param question
+	 *            the question which has been answered
+	 * @param answer
+	 *            the new answer
+	 * @return false if there's no unread notification about the question
+	 */
+	public synchronized boolean coalesce(Question question, Answer answer) {
+		Notification notification = this.unreadByQuestion.get(question);
+		if (notification == null)
+			return false;
+		this.removeAt(this.find(notification.getSequence()));
+		notification.coalesce(answer);
+		this.add(notification);
+		return true;
+	}
+
+	/**
+	 * Updates a notification after one of the answers it's about has been
+	 * deleted, removing it if there are none left.
+	 *
+	 * @param notification
+	 *            the notification about the answer
+	 * @param answer
+	 *            the deleted answer
+	 */
+	public synchronized void answerDeleted(Notification notification,
+			Answer answer) {
+		if (!this.contains(notification))
+			return;
+		if (!notification.answerDeleted(answer))
+			notification.unregister();
+	}
+
+	/**
+	 * Removes a notification.
+	 *
+	 * @param notification
+	 *            the notification to remove
+	 * @return whether the notification was in this inbox
+	 */
+	public synchronized boolean remove(Notification notification) {
+		if (this.byId.get(notification.getID()) != notification)
+			return false;
+		this.removeAt(this.find(notification.getSequence()));
+		return true;
+	}
+
+	/**
+	 * Removes all notifications about changes older than a given date as well
+	 * as the oldest ones exceeding a maximal number of notifications.
+	 *
+	 * @param before
+	 *            the date before which notifications expire
+	 * @param maxCount
+	 *            the maximal number of notifications to keep
+	 * @return the removed notifications
+	 */
+	public List<Notification> expire(Date before, int maxCount) {
+		List<Notification> expired = new ArrayList<Notification>();
+		synchronized (this) {
+			while (this.size > 0
+					&& (this.size > maxCount || this.at(0).getAbout()
+							.timestamp().before(before))) {
+				expired.add(this.at(0));
+				this.removeAt(0);
+			}
+		}
+		for (Notification notification : expired)
+			notification.detach();
+		return expired;
+	}
+
+	/**
+	 * Marks a notification as read.
+	 *
+	 * @param notification
+	 *            the notification which has been seen
+	 */
+	public synchronized void markRead(Notification notification) {
+		if (!notification.isNew)
+			return;
+		notification.isNew = false;
+		if (this.byId.get(notification.getID()) == notification) {
+			this.unread--;
+			this.unreadByQuestion.remove(notification.answered());
+		}
+	}
+
+	/**
+	 * @param id
+	 *            the id of the notification
+	 * @return the notification with the given id or <code>null</code>
+	 */
+	public synchronized Notification get(int id) {
+		return this.byId.get(id);
+	}
+
+	/**
+	 * @param notification
+	 *            the notification to check
+	 * @return whether the notification is in this inbox
+	 */
+	public synchronized boolean contains(Notification notification) {
+		return this.byId.get(notification.getID()) == notification;
+	}
+
+	/**
+	 * @return the number of notifications
+	 */
+	public synchronized int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return the number of unread notifications
+	 */
+	public synchronized int unreadCount() {
+		return this.unread;
+	}
+
+	/**
+	 * Get the most recent notifications.
+	 *
+	 * @param count
+	 *            the maximal number of notifications to get
+	 * @return the most recent notifications, most recent one first
+	 */
+	public synchronized List<Notification> latest(int count) {
+		int n = Math.min(count, this.size);
+		List<Notification> latest = new ArrayList<Notification>(n);
+		for (int i = this.size - 1; i >= this.size - n; i--)
+			latest.add(this.at(i));
+		return latest;
+	}
+
+	/**
+	 * Get the notifications added (or coalesced into) since a given one.
+	 *
+	 * @param cursor
+	 *            the sequence number of the last change already known
+	 * @return all notifications with a higher sequence number, most recent
+	 *         one first
+	 */
+	public synchronized List<Notification> since(int cursor) {
+		// nothing can be newer than the largest possible cursor
+		if (cursor == Integer.MAX_VALUE)
+			return new ArrayList<Notification>();
+		return this.latest(this.size - this.find(cursor + 1));
+	}
+
+	/**
+	 * Waits for notifications being added (or coalesced into) since a given
+	 * one without blocking a thread: the returned future is done as soon as
+	 * there are such notifications or the timeout has passed.
+	 *
+	 * @param cursor
+	 *            the sequence number of the last change already known
+	 * @param timeout
+	 *            the maximal number of milliseconds to wait
+	 * @return a future telling whether there are newer notifications
+	 */
+	public synchronized Future<Boolean> awaitSince(int cursor, long timeout) {
+		long now = System.currentTimeMillis();
+		Waiter waiter = new Waiter(now + timeout);
+		if (this.size > 0 && this.at(this.size - 1).getSequence() > cursor) {
+			waiter.signal();
+			return waiter;
+		}
+		for (Iterator<Waiter> it = this.waiters.iterator(); it.hasNext();)
+			if (it.next().isExpired(now))
+				it.remove();
+		this.waiters.add(waiter);
+		return waiter;
+	}
+
+	/**
+	 * @return all notifications, most recent one first
+	 */
+	public List<Notification> all() {
+		return this.latest(CAPACITY);
+	}
+
+	private Notification at(int pos) {
+		return this.ring[(this.head + pos) % CAPACITY];
+	}
+
+	private void set(int pos, Notification notification) {
+		this.ring[(this.head + pos) % CAPACITY] = notification;
+	}
+
+	/**
+	 * Finds the position of the first notification with at least the given
+	 * sequence number by binary search.
+	 */
+	private int find(int sequence) {
+		int low = 0, high = this.size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (this.at(middle).getSequence() < sequence)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * A request waiting for the next notification, done either once that
+	 * arrives or once the deadline has passed.
+	 */
+	private static class Waiter implements Future<Boolean> {
+		private final long deadline;
+		private volatile boolean signaled;
+
+		Waiter(long deadline) {
+			this.deadline = deadline;
+		}
+
+		synchronized void signal() {
+			this.signaled = true;
+			this.notifyAll();
+		}
+
+		boolean isExpired(long now) {
+			return now >= this.deadline;
+		}
+
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			return false;
+		}
+
+		public boolean isCancelled() {
+			return false;
+		}
+
+		public boolean isDone() {
+			return this.signaled || this.isExpired(System.currentTimeMillis());
+		}
+
+		public synchronized Boolean get() throws InterruptedException {
+			long wait;
+			while (!this.signaled
+					&& (wait = this.deadline - System.currentTimeMillis()) > 0)
+				this.wait(wait);
+			return this.signaled;
+		}
+
+		public synchronized Boolean get(long timeout, TimeUnit unit)
+				throws InterruptedException, TimeoutException {
+			long until = System.currentTimeMillis() + unit.toMillis(timeout);
+			long wait;
+			while (!this.isDone()
+					&& (wait = Math.min(this.deadline, until)
+							- System.currentTimeMillis()) > 0)
+				this.wait(wait);
+			if (!this.isDone())
+				throw new TimeoutException();
+			return this.signaled;
+		}
+	}
+
+	private void removeAt(int pos) {
+		Notification removed = this.at(pos);
+		this.byId.remove(removed.getID());
+		if (removed.isNew) {
+			this.unread--;
+			if (removed.answered() != null)
+				this.unreadByQuestion.remove(removed.answered());
+		}
+		if (pos == 0) {
+			this.set(0, null);
+			this.head = (this.head + 1) % CAPACITY;
+		} else {
+			for (int i = pos; i < this.size - 1; i++)
+				this.set(i, this.at(i + 1));
+			this.set(this.size - 1, null);
+		}
+		this.size--;
+	}
+}
@@ -0,0 +1,92 @@
+package models;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Stores passwords as salted PBKDF2 hashes, so that a leaked user database
+ * can neither be looked up in precomputed tables nor be brute-forced cheaply.
+ *
+ * The hashes are stored as <code>pbkdf2$iterations$salt$hash</code> (with
+ * salt and hash in hex), so that they can still be verified after the number
+ * of iterations has been raised. Legacy SHA-1 hashes are still accepted and
+ * are upgraded on the next successful login.
+ */
+public class Pbkdf2Credentials extends Credentials {
+
+	private static final String PREFIX = "pbkdf2$";
+	private static final String ALGORITHM = "PBKDF2WithHmacSHA1";
+	private static final int SALT_LENGTH = 16;
+	private static final int HASH_LENGTH = 20;
+
+	private static final SecureRandom random = new SecureRandom();
+
+	private final int iterations;
+
+	/**
+	 * @param iterations
+	 *            how often to apply the hash function (the more, the slower
+	 *            both logging in and brute-forcing get)
+	 */
+	public Pbkdf2Credentials(int iterations) {
+		if (iterations <= 0)
+			throw new IllegalArgumentException();
+		this.iterations = iterations;
+	}
+
+	@Override
+	public String hash(String password) {
+		byte[] salt = new byte[SALT_LENGTH];
+		random.nextBytes(salt);
+		return PREFIX + this.iterations + "$" + toHex(salt) + "$"
+				+ toHex(pbkdf2(password, salt, this.iterations));
+	}
+
+	@Override
+	public boolean needsRehash(String stored) {
+		return !stored.startsWith(PREFIX + this.iterations + "$");
+	}
+
+	/**
+	 * @return whether a stored hash is a PBKDF2 hash
+	 */
+	static boolean accepts(String stored) {
+		return stored != null && stored.startsWith(PREFIX);
+	}
+
+	/**
+	 * Checks a password against a stored PBKDF2 hash.
+	 */
+	static boolean verifyHash(String password, String stored) {
+		String[] parts = stored.split("\\$");
+		if (parts.length != 4)
+			return false;
+		int iterations;
+		try {
+			iterations = Integer.parseInt(parts[1]);
+		} catch (NumberFormatException e) {
+			return false;
+		}
+		byte[] salt = fromHex(parts[2], SALT_LENGTH);
+		byte[] expected = fromHex(parts[3], HASH_LENGTH);
+		if (iterations <= 0 || salt == null || expected == null)
+			return false;
+		return MessageDigest.isEqual(pbkdf2(password, salt, iterations),
+				expected);
+	}
+
+	private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+		try {
+			PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt,
+					iterations, 8 * HASH_LENGTH);
+			return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(
+					spec).getEncoded();
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
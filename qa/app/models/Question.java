@@ -1,12 +1,14 @@
 package models;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import models.database.Database;
 
@@ -26,9 +28,13 @@ public class Question extends Entry implements IObservable {
 	private boolean isLocked = false;
 
 	private Answer bestAnswer;
+	/** The user who has gained reputation for the best answer. */
+	private User bestAnswerAuthor;
 	private Calendar settingOfBestAnswer;
 	private final ArrayList<Tag> tags = new ArrayList<Tag>();
-	protected HashSet<IObserver> observers;
+	/** The observers (safe to watch and unwatch concurrently). */
+	protected final Set<IObserver> observers = Collections
+			.newSetFromMap(new ConcurrentHashMap<IObserver, Boolean>());
 
 	/**
 	 * Create a Question.
@@ -47,7 +53,6 @@ public class Question extends Entry implements IObservable {
 		super(owner, content);
 		this.answers = new IDTable<Answer>();
 		this.comments = new IDTable<Comment>();
-		this.observers = new HashSet<IObserver>();
 		this.id = Database.get().questions().register(this);
 	}
 
@@ -57,14 +62,19 @@ public class Question extends Entry implements IObservable {
 	 */
 	@Override
 	public void unregister() {
-		Collection<Answer> answers = this.answers.values();
-		Collection<Comment> comments = this.comments.values();
+		Collection<Answer> answers = this.answers.snapshot();
+		Collection<Comment> comments = this.comments.snapshot();
 		this.answers = new IDTable<Answer>();
 		this.comments = new IDTable<Comment>();
 		for (Answer answer : answers)
 			answer.unregister();
 		for (Comment comment : comments)
 			comment.unregister();
+		for (Notification notification : this.unregisterNotifications())
+			notification.unregister();
+		for (IObserver observer : this.observers)
+			if (observer instanceof User)
+				((User) observer).unregisterWatched(this);
 		this.observers.clear();
 		if (this.id != -1)
 			Database.get().questions().remove(this.id);
@@ -80,6 +90,8 @@ public class Question extends Entry implements IObservable {
 	 */
 	public void unregister(Answer answer) {
 		this.answers.remove(answer.id());
+		if (answer == this.bestAnswer)
+			this.rewardBestAnswer(null);
 	}
 
 	/**
@@ -155,7 +167,7 @@ public class Question extends Entry implements IObservable {
 	 * @return {@link Collection} of {@link Answers}
 	 */
 	public List<Answer> answers() {
-		List<Answer> list = new ArrayList<Answer>(answers.values());
+		List<Answer> list = new ArrayList<Answer>(answers.snapshot());
 		Collections.sort(list);
 		return Collections.unmodifiableList(list);
 	}
@@ -166,7 +178,7 @@ public class Question extends Entry implements IObservable {
 	 * @return {@link Collection} of {@link Comments}
 	 */
 	public List<Comment> comments() {
-		List<Comment> list = new ArrayList<Comment>(comments.values());
+		List<Comment> list = new ArrayList<Comment>(comments.snapshot());
 		Collections.sort(list);
 		return Collections.unmodifiableList(list);
 	}
@@ -213,13 +225,25 @@ public class Question extends Entry implements IObservable {
 
 	public boolean setBestAnswer(Answer bestAnswer, Calendar now) {
 		if (this.isBestAnswerSettable(now)) {
-			this.bestAnswer = bestAnswer;
+			this.rewardBestAnswer(bestAnswer);
 			this.settingOfBestAnswer = now;
 			return true;
 		} else
 			return false;
 	}
 	
+	/**
+	 * Sets the best answer and moves the reputation for it to its author.
+	 */
+	private void rewardBestAnswer(Answer bestAnswer) {
+		if (this.bestAnswerAuthor != null)
+			this.bestAnswerAuthor.addReputation(-User.REPUTATION_BEST_ANSWER);
+		this.bestAnswer = bestAnswer;
+		this.bestAnswerAuthor = bestAnswer == null ? null : bestAnswer.owner();
+		if (this.bestAnswerAuthor != null)
+			this.bestAnswerAuthor.addReputation(User.REPUTATION_BEST_ANSWER);
+	}
+
 	public boolean hasBestAnswer() {
 		return bestAnswer != null;
 	}
@@ -254,16 +278,24 @@ public class Question extends Entry implements IObservable {
 	}
 
 	/**
+	 * Sets the tags of a question and notifies all users watching one of the
+	 * newly added tags (but each of them only once).
+	 * 
 	 * @param tags a comma- or whitespace-separated list of tags to be associated
 	 * 			   with this question
 	 */
 	public void setTagString(String tags) {
+		List<Tag> oldTags = this.getTags();
 		for (Tag tag : this.tags)
 			tag.unregister(this);
 		this.tags.clear();
 
-		if (tags == null)
-			return;
+		if (tags != null)
+			this.parseTags(tags);
+		this.notifySubscribers(oldTags);
+	}
+
+	private void parseTags(String tags) {
 
 		String bits[] = tags.split("[\\s,]+");
 		for (String bit : bits) {
@@ -281,6 +313,39 @@ public class Question extends Entry implements IObservable {
 		Collections.sort(this.tags);
 	}
 
+	/**
+	 * Notifies the users watching any of this question's tags who haven't
+	 * already been watching any of its previous tags.
+	 */
+	private void notifySubscribers(List<Tag> oldTags) {
+		BitSet ids = new BitSet();
+		for (Tag tag : this.tags)
+			tag.addSubscriberIds(ids);
+		if (ids.isEmpty())
+			return;
+		BitSet old = new BitSet();
+		for (Tag tag : oldTags)
+			tag.addSubscriberIds(old);
+		ids.andNot(old);
+		if (this.owner() != null)
+			ids.clear(this.owner().getID());
+
+		List<IObserver> subscribers = new ArrayList<IObserver>(ids
+				.cardinality());
+		for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1))
+			for (Tag tag : this.tags) {
+				User user = tag.getSubscriber(id);
+				if (user != null) {
+					// deleted users are unsubscribed in the background
+					if (!user.isDeleted())
+						subscribers.add(user);
+					break;
+				}
+			}
+		if (!subscribers.isEmpty())
+			NotificationDispatcher.get().dispatch(this, this, subscribers);
+	}
+
 	/* Get a List of all tags for a <code>Question</code>.
 	 * 
 	 * @return List of tags
@@ -315,8 +380,9 @@ public class Question extends Entry implements IObservable {
 	 * @see models.IObservable#notifyObservers(java.lang.Object)
 	 */
 	public void notifyObservers(Object arg) {
-		for (IObserver o : this.observers)
-			o.observe(this, arg);
+		// the dispatcher may notify them later, so hand it a snapshot
+		NotificationDispatcher.get().dispatch(this, arg,
+				new ArrayList<IObserver>(this.observers));
 	}
 
 	/**
@@ -0,0 +1,123 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Notifies observers in the background: changes are put into a bounded queue
+ * which is processed by a single worker thread. Posting a change thus takes
+ * the same time no matter how many observers there are, and as there's only
+ * one worker, every observer is notified in the order the changes happened.
+ *
+ * If the worker can't keep up and the queue fills up, dispatching blocks
+ * until there's room again instead of dropping notifications.
+ */
+public class QueuedNotificationDispatcher extends NotificationDispatcher
+		implements Runnable {
+
+	/** The maximal number of changes taken from the queue at once. */
+	public static final int BATCH_SIZE = 64;
+
+	private final BlockingQueue<Change> queue;
+	private final Thread worker;
+	private volatile boolean stopped;
+
+	/**
+	 * Creates a dispatcher and starts its worker thread.
+	 *
+	 * @param capacity
+	 *            the maximal number of changes waiting to be dispatched
+	 */
+	public QueuedNotificationDispatcher(int capacity) {
+		this.queue = new ArrayBlockingQueue<Change>(capacity);
+		this.worker = new Thread(this, "notification-dispatcher");
+		this.worker.setDaemon(true);
+		this.worker.start();
+	}
+
+	@Override
+	public void dispatch(IObservable what, Object arg,
+			Collection<IObserver> observers) {
+		if (this.stopped) {
+			super.dispatch(what, arg, observers);
+			return;
+		}
+		try {
+			this.queue.put(new Change(what, arg, observers));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			super.dispatch(what, arg, observers);
+		}
+	}
+
+	/**
+	 * @return the number of changes waiting to be dispatched
+	 */
+	public int pending() {
+		return this.queue.size();
+	}
+
+	/**
+	 * Dispatches all pending changes and stops the worker thread. Changes
+	 * dispatched afterwards are handed on right away.
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the worker
+	 */
+	public void stop() throws InterruptedException {
+		this.stopped = true;
+		this.worker.interrupt();
+		this.worker.join();
+		// in case anything was queued while stopping
+		List<Change> rest = new ArrayList<Change>();
+		this.queue.drainTo(rest);
+		for (Change change : rest)
+			deliver(change.what, change.arg, change.observers);
+	}
+
+	@Override
+	protected void shutdown() {
+		try {
+			this.stop();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Takes changes from the queue and notifies their observers until
+	 * stopped.
+	 */
+	public void run() {
+		List<Change> batch = new ArrayList<Change>(BATCH_SIZE);
+		while (!this.stopped || !this.queue.isEmpty()) {
+			try {
+				if (this.queue.isEmpty())
+					batch.add(this.queue.take());
+				this.queue.drainTo(batch, BATCH_SIZE - batch.size());
+			} catch (InterruptedException e) {
+				// stopped, so deliver what's left
+				continue;
+			}
+			for (Change change : batch)
+				deliver(change.what, change.arg, change.observers);
+			batch.clear();
+		}
+	}
+
+	private static class Change {
+		private final IObservable what;
+		private final Object arg;
+		private final Collection<IObserver> observers;
+
+		public Change(IObservable what, Object arg,
+				Collection<IObserver> observers) {
+			this.what = what;
+			this.arg = arg;
+			this.observers = observers;
+		}
+	}
+}
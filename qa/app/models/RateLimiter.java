@@ -0,0 +1,157 @@
+package models;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import models.helpers.TokenBucket;
+
+/**
+ * Limits how often a user (and, independently, a single IP address) may post
+ * or vote, so that abusive clients are turned away before they get to the
+ * model instead of being blocked as spammers afterwards (see
+ * {@link User#isSpammer()}).
+ *
+ * Every user and every IP address gets its own {@link TokenBucket}. The
+ * buckets are created on demand and dropped by {@link #expire()} once they've
+ * been refilled completely, so that only clients active within the last few
+ * minutes take up memory.
+ */
+public class RateLimiter {
+
+	/*
+	 * The limits used unless configured otherwise (see the constructor for
+	 * their meaning).
+	 */
+	public static final int DEFAULT_USER_BURST = 10;
+	public static final int DEFAULT_USER_PER_MINUTE = 6;
+	public static final int DEFAULT_IP_BURST = 30;
+	public static final int DEFAULT_IP_PER_MINUTE = 30;
+
+	private static RateLimiter instance = new RateLimiter(DEFAULT_USER_BURST,
+			DEFAULT_USER_PER_MINUTE, DEFAULT_IP_BURST, DEFAULT_IP_PER_MINUTE);
+
+	private final int userCapacity;
+	private final int userPerMinute;
+	private final int ipCapacity;
+	private final int ipPerMinute;
+	private final ConcurrentHashMap<User, TokenBucket> users = new ConcurrentHashMap<User, TokenBucket>();
+	private final ConcurrentHashMap<String, TokenBucket> addresses = new ConcurrentHashMap<String, TokenBucket>();
+
+	/**
+	 * Gain access to the rate limiter.
+	 *
+	 * @return the rate limiter that is currently responsible.
+	 */
+	public static RateLimiter get() {
+		return instance;
+	}
+
+	/**
+	 * Exchanges the rate limiter (e.g. for one with configured limits).
+	 *
+	 * @param limiter
+	 *            the rate limiter to take responsibility.
+	 */
+	public static void swapWith(RateLimiter limiter) {
+		instance = limiter;
+	}
+
+	/**
+	 * @param userCapacity
+	 *            the number of writes a user may burst
+	 * @param userPerMinute
+	 *            the number of writes per minute a user may sustain
+	 * @param ipCapacity
+	 *            the number of writes an IP address may burst
+	 * @param ipPerMinute
+	 *            the number of writes per minute an IP address may sustain
+	 */
+	public RateLimiter(int userCapacity, int userPerMinute, int ipCapacity,
+			int ipPerMinute) {
+		if (userCapacity <= 0 || userPerMinute <= 0 || ipCapacity <= 0
+				|| ipPerMinute <= 0)
+			throw new IllegalArgumentException();
+		this.userCapacity = userCapacity;
+		this.userPerMinute = userPerMinute;
+		this.ipCapacity = ipCapacity;
+		this.ipPerMinute = ipPerMinute;
+	}
+
+	/**
+	 * Tries to let a user write something. The user's own limit is checked
+	 * first, so that a throttled user doesn't use up the tokens of everybody
+	 * else writing from the same IP address.
+	 *
+	 * @param user
+	 *            the writing user (or <code>null</code> if unknown)
+	 * @param address
+	 *            the IP address he's writing from (or <code>null</code> if
+	 *            unknown)
+	 * @return 0 if he may write, otherwise the number of milliseconds he has
+	 *         to wait
+	 */
+	public long acquire(User user, String address) {
+		long now = SystemInformation.get().now().getTime();
+		TokenBucket userBucket = null;
+		if (user != null) {
+			userBucket = bucket(this.users, user, this.userCapacity,
+					this.userPerMinute);
+			long wait = userBucket.take(now);
+			if (wait > 0)
+				return wait;
+		}
+		if (address != null) {
+			long wait = bucket(this.addresses, address, this.ipCapacity,
+					this.ipPerMinute).take(now);
+			if (wait > 0) {
+				// the user didn't get to write after all
+				if (userBucket != null)
+					userBucket.refund();
+				return wait;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Forgets about all clients who haven't written for long enough to be
+	 * allowed a full burst again.
+	 *
+	 * @return the number of forgotten clients
+	 */
+	public int expire() {
+		long now = SystemInformation.get().now().getTime();
+		return expire(this.users, now) + expire(this.addresses, now);
+	}
+
+	/**
+	 * @return the number of users and IP addresses currently being tracked
+	 */
+	public int size() {
+		return this.users.size() + this.addresses.size();
+	}
+
+	private static <K> TokenBucket bucket(ConcurrentHashMap<K, TokenBucket> buckets,
+			K key, int capacity, int perMinute) {
+		TokenBucket bucket = buckets.get(key);
+		if (bucket == null) {
+			TokenBucket created = new TokenBucket(capacity, perMinute);
+			bucket = buckets.putIfAbsent(key, created);
+			if (bucket == null)
+				bucket = created;
+		}
+		return bucket;
+	}
+
+	private static <K> int expire(ConcurrentHashMap<K, TokenBucket> buckets,
+			long now) {
+		int expired = 0;
+		for (Map.Entry<K, TokenBucket> entry : buckets.entrySet())
+			// a full bucket is as good as a new one (at worst, a token taken
+			// while it's being removed is forgotten)
+			if (entry.getValue().isFull(now)
+					&& buckets.remove(entry.getKey(), entry.getValue()))
+				expired++;
+		return expired;
+	}
+}
@@ -0,0 +1,452 @@
+package models.SearchEngine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable part of the {@link SearchIndex} which is stored on disk and
+ * memory-mapped read-only when opened. A segment file consists of
+ * <ul>
+ * <li>a header (magic, version, number of documents and terms and the offsets
+ * of the term bytes and the postings),</li>
+ * <li>the documents sorted by id, each with its norm (number of distinct
+ * words) and the hash of the content it was indexed from,</li>
+ * <li>the term table sorted by the UTF-8 bytes of the terms, each entry
+ * pointing to the term's bytes and postings and holding its document
+ * frequency,</li>
+ * <li>the term bytes and</li>
+ * <li>the postings as delta- and varint-encoded document ids.</li>
+ * </ul>
+ *
+ * Segments are never changed once written, they are only replaced by merging
+ * them (see {@link #merge(File, List, BitSet)}).
+ */
+public class IndexSegment {
+
+	private static final int MAGIC = 0x51414958; // "QAIX"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 24;
+	private static final int DOC_SIZE = 12;
+	private static final int TERM_SIZE = 12;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** Orders terms the same way they are stored: by their UTF-8 bytes. */
+	private static final Comparator<byte[]> BYTE_ORDER = new Comparator<byte[]>() {
+		public int compare(byte[] a, byte[] b) {
+			return compareBytes(a, b);
+		}
+	};
+
+	private final File file;
+	private final MappedByteBuffer buffer;
+	private boolean closed;
+	private final int docCount;
+	private final int termCount;
+	private final int termBytesOffset;
+	private final int postingsOffset;
+
+	private IndexSegment(File file, MappedByteBuffer buffer) throws IOException {
+		this.file = file;
+		this.buffer = buffer;
+		if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+			throw new IOException("Not a search index segment: " + file);
+		this.docCount = buffer.getInt(8);
+		this.termCount = buffer.getInt(12);
+		this.termBytesOffset = buffer.getInt(16);
+		this.postingsOffset = buffer.getInt(20);
+	}
+
+	/**
+	 * Memory-maps an existing segment file read-only.
+	 *
+	 * @param file
+	 *            the segment file
+	 * @return the opened segment
+	 * @throws IOException
+	 *             if the file can't be read or isn't a segment
+	 */
+	public static IndexSegment open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size());
+			return new IndexSegment(file, buffer);
+		} finally {
+			// the mapping stays valid after closing the channel
+			raf.close();
+		}
+	}
+
+	/**
+	 * Writes a new segment file and opens it.
+	 *
+	 * @param file
+	 *            the file to write to (must not exist yet)
+	 * @param postings
+	 *            the document ids per term
+	 * @param norms
+	 *            the norm per document id
+	 * @param hashes
+	 *            the content hash per document id
+	 * @return the opened segment
+	 * @throws IOException
+	 */
+	public static IndexSegment write(File file, Map<String, BitSet> postings,
+			Map<Integer, Integer> norms, Map<Integer, Integer> hashes)
+			throws IOException {
+		TreeMap<byte[], BitSet> terms = new TreeMap<byte[], BitSet>(BYTE_ORDER);
+		for (Map.Entry<String, BitSet> entry : postings.entrySet())
+			if (!entry.getValue().isEmpty())
+				terms.put(entry.getKey().getBytes(UTF8), entry.getValue());
+		List<Integer> ids = new ArrayList<Integer>(norms.keySet());
+		Collections.sort(ids);
+
+		ByteArrayOutputStream termBytes = new ByteArrayOutputStream();
+		ByteArrayOutputStream postingBytes = new ByteArrayOutputStream();
+		ByteArrayOutputStream termTable = new ByteArrayOutputStream();
+		DataOutputStream table = new DataOutputStream(termTable);
+		for (Map.Entry<byte[], BitSet> entry : terms.entrySet()) {
+			BitSet docs = entry.getValue();
+			table.writeInt(termBytes.size());
+			table.writeInt(postingBytes.size());
+			table.writeInt(docs.cardinality());
+			termBytes.write(entry.getKey());
+			int previous = 0;
+			for (int id = docs.nextSetBit(0); id >= 0; id = docs.nextSetBit(id + 1)) {
+				writeVarint(postingBytes, id - previous);
+				previous = id;
+			}
+		}
+
+		int termTableOffset = HEADER_SIZE + DOC_SIZE * ids.size();
+		int termBytesOffset = termTableOffset + TERM_SIZE * terms.size();
+		int postingsOffset = termBytesOffset + termBytes.size();
+
+		// write to a temporary file first so no half-written segment is ever
+		// picked up by open()
+		File tmp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(ids.size());
+			out.writeInt(terms.size());
+			out.writeInt(termBytesOffset);
+			out.writeInt(postingsOffset);
+			for (Integer id : ids) {
+				out.writeInt(id);
+				out.writeInt(norms.get(id));
+				Integer hash = hashes.get(id);
+				out.writeInt(hash == null ? 0 : hash);
+			}
+			termTable.writeTo(out);
+			termBytes.writeTo(out);
+			postingBytes.writeTo(out);
+		} finally {
+			out.close();
+		}
+		if (!tmp.renameTo(file))
+			throw new IOException("Couldn't create segment " + file);
+		return open(file);
+	}
+
+	/**
+	 * Merges several segments into a new one. Where a document occurs in more
+	 * than one segment, the entry of the latest segment wins.
+	 *
+	 * @param file
+	 *            the file for the merged segment
+	 * @param segments
+	 *            the segments to merge, oldest first
+	 * @param deleted
+	 *            ids of documents to drop while merging
+	 * @return the merged segment
+	 * @throws IOException
+	 */
+	public static IndexSegment merge(File file, List<IndexSegment> segments,
+			BitSet deleted) throws IOException {
+		TreeMap<String, BitSet> postings = new TreeMap<String, BitSet>();
+		TreeMap<Integer, Integer> norms = new TreeMap<Integer, Integer>();
+		TreeMap<Integer, Integer> hashes = new TreeMap<Integer, Integer>();
+		BitSet taken = new BitSet();
+		for (int s = segments.size() - 1; s >= 0; s--) {
+			IndexSegment segment = segments.get(s);
+			BitSet own = new BitSet();
+			for (int i = 0; i < segment.docCount; i++) {
+				int id = segment.docId(i);
+				if (taken.get(id) || deleted.get(id))
+					continue;
+				own.set(id);
+				norms.put(id, segment.docNorm(i));
+				hashes.put(id, segment.docHash(i));
+			}
+			for (int t = 0; t < segment.termCount; t++) {
+				BitSet docs = new BitSet();
+				for (int id : segment.postingsAt(t))
+					if (own.get(id))
+						docs.set(id);
+				if (docs.isEmpty())
+					continue;
+				String term = segment.termAt(t);
+				BitSet existing = postings.get(term);
+				if (existing == null)
+					postings.put(term, docs);
+				else
+					existing.or(docs);
+			}
+			taken.or(own);
+		}
+		return write(file, postings, norms, hashes);
+	}
+
+	/**
+	 * Unmaps this segment right away instead of whenever the garbage collector
+	 * gets to it, so that neither address space nor the file handle leak and
+	 * the file can be deleted. The segment must not be used anymore
+	 * afterwards.
+	 */
+	public synchronized void close() {
+		if (this.closed)
+			return;
+		this.closed = true;
+		unmap(this.buffer);
+	}
+
+	/**
+	 * Closes this segment and deletes its file.
+	 */
+	public void delete() {
+		this.close();
+		this.file.delete();
+	}
+
+	/**
+	 * Releases a mapping, if the JVM allows it (through
+	 * <code>Unsafe.invokeCleaner</code> since Java 9 and the buffer's cleaner
+	 * before). Otherwise the mapping is released when it's garbage collected.
+	 */
+	private static void unmap(MappedByteBuffer buffer) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner",
+					java.nio.ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner.invoke(theUnsafe.get(null), buffer);
+			return;
+		} catch (Exception e) {
+			// not available before Java 9
+		}
+		try {
+			Method cleaner = buffer.getClass().getMethod("cleaner");
+			cleaner.setAccessible(true);
+			Object clean = cleaner.invoke(buffer);
+			if (clean != null)
+				clean.getClass().getMethod("clean").invoke(clean);
+		} catch (Exception e) {
+			// leave it to the garbage collector
+		}
+	}
+
+	/**
+	 * @return the file this segment is stored in
+	 */
+	public File file() {
+		return this.file;
+	}
+
+	/**
+	 * @return the number of documents in this segment
+	 */
+	public int docCount() {
+		return this.docCount;
+	}
+
+	/**
+	 * @return the number of distinct terms in this segment
+	 */
+	public int termCount() {
+		return this.termCount;
+	}
+
+	/**
+	 * Get the ids of all documents containing a term.
+	 *
+	 * @param term
+	 *            the term to look up
+	 * @return the ascending document ids (empty if the term is unknown)
+	 */
+	public int[] postings(String term) {
+		int index = this.findTerm(term.getBytes(UTF8));
+		return index < 0 ? new int[0] : this.postingsAt(index);
+	}
+
+	/**
+	 * Finds the position of a document in this segment.
+	 *
+	 * @param id
+	 *            the document id
+	 * @return the position or -1 if the document isn't contained
+	 */
+	public int findDoc(int id) {
+		int low = 0, high = this.docCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midId = this.docId(mid);
+			if (midId < id)
+				low = mid + 1;
+			else if (midId > id)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param index
+	 *            the position of a document (see {@link #findDoc(int)})
+	 * @return the id of the document
+	 */
+	public int docId(int index) {
+		return this.buffer.getInt(HEADER_SIZE + DOC_SIZE * index);
+	}
+
+	/**
+	 * @param index
+	 *            the position of a document (see {@link #findDoc(int)})
+	 * @return the number of distinct words of the document
+	 */
+	public int docNorm(int index) {
+		return this.buffer.getInt(HEADER_SIZE + DOC_SIZE * index + 4);
+	}
+
+	/**
+	 * @param index
+	 *            the position of a document (see {@link #findDoc(int)})
+	 * @return the hash of the content the document was indexed from
+	 */
+	public int docHash(int index) {
+		return this.buffer.getInt(HEADER_SIZE + DOC_SIZE * index + 8);
+	}
+
+	private int termEntry(int index) {
+		return HEADER_SIZE + DOC_SIZE * this.docCount + TERM_SIZE * index;
+	}
+
+	private int termStart(int index) {
+		return this.termBytesOffset + this.buffer.getInt(this.termEntry(index));
+	}
+
+	private int termEnd(int index) {
+		if (index + 1 < this.termCount)
+			return this.termStart(index + 1);
+		return this.postingsOffset;
+	}
+
+	/**
+	 * @param index
+	 *            the position of a term in the sorted term table
+	 * @return the term
+	 */
+	public String termAt(int index) {
+		byte[] bytes = new byte[this.termEnd(index) - this.termStart(index)];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = this.buffer.get(this.termStart(index) + i);
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * @param index
+	 *            the position of a term in the sorted term table
+	 * @return the number of documents containing the term
+	 */
+	public int docFreqAt(int index) {
+		return this.buffer.getInt(this.termEntry(index) + 8);
+	}
+
+	private int[] postingsAt(int index) {
+		int entry = this.termEntry(index);
+		int position = this.postingsOffset + this.buffer.getInt(entry + 4);
+		int[] ids = new int[this.buffer.getInt(entry + 8)];
+		int id = 0;
+		for (int i = 0; i < ids.length; i++) {
+			int delta = 0, shift = 0;
+			byte b;
+			do {
+				b = this.buffer.get(position++);
+				delta |= (b & 0x7f) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			id += delta;
+			ids[i] = id;
+		}
+		return ids;
+	}
+
+	private int findTerm(byte[] term) {
+		int low = 0, high = this.termCount - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = this.compareTerm(mid, term);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	private int compareTerm(int index, byte[] term) {
+		int start = this.termStart(index);
+		int length = this.termEnd(index) - start;
+		for (int i = 0; i < length && i < term.length; i++) {
+			int cmp = (this.buffer.get(start + i) & 0xff) - (term[i] & 0xff);
+			if (cmp != 0)
+				return cmp;
+		}
+		return length - term.length;
+	}
+
+	private static int compareBytes(byte[] a, byte[] b) {
+		for (int i = 0; i < a.length && i < b.length; i++) {
+			int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+			if (cmp != 0)
+				return cmp;
+		}
+		return a.length - b.length;
+	}
+
+	private static void writeVarint(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7f) != 0) {
+			out.write((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	@Override
+	public String toString() {
+		return "IndexSegment(" + this.file.getName() + ", " + this.docCount
+				+ " docs, " + this.termCount + " terms)";
+	}
+}
@@ -0,0 +1,115 @@
+package models.SearchEngine;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Computes MinHash signatures of texts. The share of equal values in two
+ * signatures estimates the Jaccard similarity of the texts' shingles (single
+ * words and pairs of consecutive words, ignoring case and {@link StopWords}).
+ */
+public class MinHash {
+
+	/** The number of values in a signature. */
+	public static final int SIZE = 64;
+
+	private static final long[] multipliers = new long[SIZE];
+	private static final long[] offsets = new long[SIZE];
+	static {
+		// fixed seed, so signatures stay comparable between restarts
+		Random random = new Random(0x5EED);
+		for (int i = 0; i < SIZE; i++) {
+			multipliers[i] = random.nextLong() | 1;
+			offsets[i] = random.nextLong();
+		}
+	}
+
+	/**
+	 * Get the shingles of a text.
+	 *
+	 * @param text
+	 *            the text to split up
+	 * @return all words and pairs of consecutive words
+	 */
+	public static Set<String> shingles(String text) {
+		List<String> words = new ArrayList<String>();
+		for (String word : text.toLowerCase().split("\\W+"))
+			if (word.length() > 0 && !StopWords.get().contains(word))
+				words.add(word);
+
+		Set<String> shingles = new HashSet<String>(words);
+		for (int i = 1; i < words.size(); i++)
+			shingles.add(words.get(i - 1) + " " + words.get(i));
+		return shingles;
+	}
+
+	/**
+	 * Computes the signature of a text.
+	 *
+	 * @param text
+	 *            the text
+	 * @return the signature or <code>null</code> if the text has no shingles
+	 */
+	public static int[] signature(String text) {
+		Set<String> shingles = shingles(text);
+		if (shingles.isEmpty())
+			return null;
+
+		int[] signature = new int[SIZE];
+		for (int i = 0; i < SIZE; i++)
+			signature[i] = Integer.MAX_VALUE;
+		for (String shingle : shingles) {
+			long hash = mix(shingle.hashCode());
+			for (int i = 0; i < SIZE; i++) {
+				int value = (int) ((multipliers[i] * hash + offsets[i]) >>> 33);
+				if (value < signature[i])
+					signature[i] = value;
+			}
+		}
+		return signature;
+	}
+
+	/**
+	 * Spreads the bits of a string hash code over a long (the finalizer of
+	 * MurmurHash3), as hash codes of short strings are anything but random.
+	 */
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	/**
+	 * Estimates the Jaccard similarity of two texts from their signatures.
+	 *
+	 * @return the share of equal signature values
+	 */
+	public static double similarity(int[] a, int[] b) {
+		int equal = 0;
+		for (int i = 0; i < SIZE; i++)
+			if (a[i] == b[i])
+				equal++;
+		return 1.0 * equal / SIZE;
+	}
+
+	/**
+	 * Computes the exact Jaccard similarity of two sets.
+	 *
+	 * @return the size of the intersection divided by the size of the union
+	 */
+	public static <T> double jaccard(Set<T> a, Set<T> b) {
+		if (a.isEmpty() && b.isEmpty())
+			return 0;
+		int common = 0;
+		for (T t : a)
+			if (b.contains(t))
+				common++;
+		return 1.0 * common / (a.size() + b.size() - common);
+	}
+}
@@ -1,9 +1,9 @@
 package models.SearchEngine;
 
-import static models.helpers.SetOperations.difference;
 import static models.helpers.SetOperations.intersection;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import models.Question;
@@ -13,10 +13,27 @@ import models.helpers.Filter;
 public class SearchFilter implements Filter<Question, Double> {
 	private final Set<String> queryFulltext;
 	private final Set<Tag>    queryTags;
+	private final Map<Question, Double> textRatings;
 
 	public SearchFilter(String query, Set<Tag> tags) {
-		queryFulltext = getWords(query);
+		queryFulltext = Tokenizer.words(query);
 		queryTags     = tags;
+		textRatings   = null;
+	}
+
+	/**
+	 * Creates a filter using full text ratings already looked up in the
+	 * {@link SearchIndex} instead of analyzing every question's content.
+	 * 
+	 * @param textRatings
+	 *            the full text rating of all questions matching the query
+	 * @param tags
+	 *            the tags to search for
+	 */
+	public SearchFilter(Map<Question, Double> textRatings, Set<Tag> tags) {
+		queryFulltext = null;
+		queryTags     = tags;
+		this.textRatings = textRatings;
 	}
 
 	public Double visit(Question question) {
@@ -37,18 +54,14 @@ public class SearchFilter implements Filter<Question, Double> {
 	}
 
 	private double rateText(Question question) {
-		Set<String> words = getWords(question.content());
+		if (textRatings != null) {
+			Double rating = textRatings.get(question);
+			return rating == null ? 0 : rating;
+		}
+		Set<String> words = Tokenizer.words(question.content());
 		if (queryFulltext == null || queryFulltext.isEmpty() || words.isEmpty())
 			return 0;
 
 		return 1.0 * intersection(words, queryFulltext).size() / words.size();
 	}
-
-	private Set<String> getWords(String string) {
-		Set<String> words = new HashSet<String>();
-		for (String word : string.split("\\W+")) {
-			words.add(word);
-		}
-		return difference(words, StopWords.get());
-	}
 }
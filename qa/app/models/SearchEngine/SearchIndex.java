@@ -0,0 +1,506 @@
+package models.SearchEngine;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import models.Question;
+
+/**
+ * An inverted index over the content of all {@link Question}s, mapping every
+ * word to the ids of the questions containing it.
+ *
+ * Newly added questions are kept in memory until they are flushed into an
+ * immutable {@link IndexSegment} on disk. Segments are memory-mapped when the
+ * index directory is opened, so the index is available right after startup
+ * without having to tokenize all questions again. As questions can change
+ * or disappear while segments can't, each document in a segment remembers
+ * the hash of the content it was indexed from and only counts as a hit if
+ * the live question still has the same content.
+ *
+ * Like the {@link models.database.Database}, the currently used index can be
+ * swapped.
+ */
+public class SearchIndex {
+
+	/** The number of segments above which they get merged into one. */
+	public static final int MAX_SEGMENTS = 8;
+
+	private static SearchIndex instance = new SearchIndex();
+
+	/** Postings of the questions added since the last flush. */
+	private HashMap<String, BitSet> postings = new HashMap<String, BitSet>();
+	private HashMap<Integer, Integer> norms = new HashMap<Integer, Integer>();
+	private HashMap<Integer, Integer> hashes = new HashMap<Integer, Integer>();
+
+	/** All words ever indexed, for correcting misspelled queries. */
+	private SpellingDictionary spelling = new SpellingDictionary();
+
+	/** MinHash signatures of all questions for finding similar ones. */
+	private SimilarityIndex similarity = new SimilarityIndex();
+
+	/** Ids of questions removed after having been written to a segment. */
+	private final BitSet deleted = new BitSet();
+
+	/** The index which replaced this one (see {@link #replaceWith}). */
+	private SearchIndex successor;
+
+	/**
+	 * Held while merging segments outside the index's own lock, so that the
+	 * segments being read can't be deleted (and unmapped) in the meantime.
+	 * Always taken before the index's lock.
+	 */
+	private final Object mergeLock = new Object();
+
+	/** The segments on disk, oldest first. Replaced, never modified. */
+	private volatile List<IndexSegment> segments = Collections.emptyList();
+	private File directory;
+	private int generation;
+
+	/**
+	 * Gain access to the search index.
+	 *
+	 * @return the index that is currently responsible.
+	 */
+	public static SearchIndex get() {
+		return instance;
+	}
+
+	/**
+	 * Exchanges the search index, e.g. after a complete rebuild.
+	 *
+	 * @param index
+	 *            the fully built index to take responsibility.
+	 */
+	public static void swapWith(SearchIndex index) {
+		instance = index;
+	}
+
+	/**
+	 * Adds a question to the index (or updates it, if it's already indexed).
+	 *
+	 * @param id
+	 *            the id of the question
+	 * @param content
+	 *            the content of the question
+	 */
+	public synchronized void add(int id, String content) {
+		if (this.successor != null) {
+			this.successor.add(id, content);
+			return;
+		}
+		Set<String> words = Tokenizer.words(content);
+		// don't count the words of an unchanged question twice
+		boolean known = this.isIndexed(id, content.hashCode());
+		for (String word : words) {
+			BitSet docs = this.postings.get(word);
+			if (docs == null) {
+				docs = new BitSet();
+				this.postings.put(word, docs);
+			}
+			docs.set(id);
+			if (!known)
+				this.spelling.add(word, 1);
+		}
+		this.norms.put(id, words.size());
+		this.hashes.put(id, content.hashCode());
+		this.similarity.add(id, content);
+		this.deleted.clear(id);
+	}
+
+	/**
+	 * Removes a question from the index, including its words from the
+	 * spelling dictionary.
+	 *
+	 * @param id
+	 *            the id of the question to remove
+	 * @param content
+	 *            the content the question has been indexed with
+	 */
+	public synchronized void remove(int id, String content) {
+		if (this.successor != null) {
+			this.successor.remove(id, content);
+			return;
+		}
+		if (this.isIndexed(id, content.hashCode()))
+			for (String word : Tokenizer.words(content))
+				this.spelling.remove(word, 1);
+		this.remove(id);
+	}
+
+	/**
+	 * Removes a question from the index.
+	 *
+	 * @param id
+	 *            the id of the question to remove
+	 */
+	public synchronized void remove(int id) {
+		if (this.successor != null) {
+			this.successor.remove(id);
+			return;
+		}
+		// stale postings are ignored as long as there's no norm and dropped
+		// when flushing
+		this.norms.remove(id);
+		this.hashes.remove(id);
+		this.similarity.remove(id);
+		this.deleted.set(id);
+	}
+
+	/**
+	 * Removes all questions from the index, including the segments on disk.
+	 */
+	public void clear() {
+		synchronized (this.mergeLock) {
+			synchronized (this) {
+				this.postings = new HashMap<String, BitSet>();
+				this.norms = new HashMap<Integer, Integer>();
+				this.hashes = new HashMap<Integer, Integer>();
+				this.spelling = new SpellingDictionary();
+				this.similarity = new SimilarityIndex();
+				this.deleted.clear();
+				for (IndexSegment segment : this.segments)
+					segment.delete();
+				this.segments = Collections.emptyList();
+			}
+		}
+	}
+
+	/**
+	 * Adds all questions of another (not persistent) index to this one, e.g.
+	 * for combining partial indexes built in parallel.
+	 *
+	 * @param other
+	 *            the index to take the questions from
+	 */
+	public synchronized void addAll(SearchIndex other) {
+		synchronized (other) {
+			for (Map.Entry<String, BitSet> entry : other.postings.entrySet()) {
+				BitSet docs = this.postings.get(entry.getKey());
+				if (docs == null)
+					this.postings.put(entry.getKey(), (BitSet) entry.getValue()
+							.clone());
+				else
+					docs.or(entry.getValue());
+			}
+			this.norms.putAll(other.norms);
+			this.hashes.putAll(other.hashes);
+			this.spelling.addAll(other.spelling);
+			this.similarity.addAll(other.similarity);
+		}
+	}
+
+	/**
+	 * Replaces this index by a completely rebuilt one, which takes over the
+	 * segment directory. Anything added to, removed from or searched in this
+	 * index afterwards is forwarded to the new one, so that the caller only
+	 * has to catch up with the questions added or removed before.
+	 *
+	 * The rebuilt index is written to a new segment right away, whereas this
+	 * index's segments are outdated: they are closed and only then deleted.
+	 *
+	 * @param rebuilt
+	 *            the new index
+	 * @throws IOException
+	 *             if the rebuilt index can't be written
+	 */
+	public void replaceWith(SearchIndex rebuilt) throws IOException {
+		synchronized (this.mergeLock) {
+			synchronized (this) {
+				if (this.directory != null) {
+					synchronized (rebuilt) {
+						rebuilt.directory = this.directory;
+						rebuilt.generation = Math.max(rebuilt.generation,
+								this.generation);
+					}
+					rebuilt.flush();
+				}
+				this.successor = rebuilt;
+				swapWith(rebuilt);
+				for (IndexSegment segment : this.segments)
+					segment.delete();
+				this.segments = Collections.emptyList();
+			}
+		}
+	}
+
+	/**
+	 * Rates all questions containing at least one of the given words by the
+	 * share of their words matching.
+	 *
+	 * @param words
+	 *            the words to search for (see {@link Tokenizer})
+	 * @param questions
+	 *            the live questions by id
+	 * @return the rating of every matching question
+	 */
+	public synchronized Map<Question, Double> search(Set<String> words,
+			Map<Integer, Question> questions) {
+		if (this.successor != null)
+			return this.successor.search(words, questions);
+		HashMap<Question, Double> ratings = new HashMap<Question, Double>();
+		HashMap<Integer, Integer> matches = new HashMap<Integer, Integer>();
+
+		for (String word : words) {
+			BitSet docs = this.postings.get(word);
+			if (docs == null)
+				continue;
+			for (int id = docs.nextSetBit(0); id >= 0; id = docs.nextSetBit(id + 1))
+				if (this.norms.containsKey(id))
+					increment(matches, id);
+		}
+		for (Map.Entry<Integer, Integer> match : matches.entrySet()) {
+			Question question = questions.get(match.getKey());
+			if (question != null)
+				ratings.put(question, rate(match.getValue(),
+						this.norms.get(match.getKey())));
+		}
+
+		List<IndexSegment> segments = this.segments;
+		for (int s = segments.size() - 1; s >= 0; s--) {
+			IndexSegment segment = segments.get(s);
+			matches.clear();
+			for (String word : words)
+				for (int id : segment.postings(word))
+					if (!this.isShadowed(id, segments, s))
+						increment(matches, id);
+			for (Map.Entry<Integer, Integer> match : matches.entrySet()) {
+				Question question = questions.get(match.getKey());
+				int doc = segment.findDoc(match.getKey());
+				if (question != null
+						&& question.content().hashCode() == segment.docHash(doc))
+					ratings.put(question, rate(match.getValue(), segment
+							.docNorm(doc)));
+			}
+		}
+		return ratings;
+	}
+
+	/**
+	 * Finds questions with content similar to the one of a question.
+	 *
+	 * @param id
+	 *            the id of the question
+	 * @param threshold
+	 *            the minimal estimated Jaccard similarity of the contents
+	 * @param questions
+	 *            the live questions by id
+	 * @return the estimated similarity of all similar questions
+	 */
+	public synchronized Map<Question, Double> similarTo(int id,
+			double threshold, Map<Integer, Question> questions) {
+		if (this.successor != null)
+			return this.successor.similarTo(id, threshold, questions);
+		HashMap<Question, Double> similar = new HashMap<Question, Double>();
+		for (Map.Entry<Integer, Double> entry : this.similarity.similarTo(id,
+				threshold).entrySet()) {
+			Question question = questions.get(entry.getKey());
+			if (question != null)
+				similar.put(question, entry.getValue());
+		}
+		return similar;
+	}
+
+	/**
+	 * Replaces all words which have never been indexed by their most probable
+	 * correction.
+	 *
+	 * @param words
+	 *            the words to correct
+	 * @return the corrections by misspelled word (empty if all words are
+	 *         known or there are no corrections)
+	 */
+	public synchronized Map<String, String> corrections(Set<String> words) {
+		if (this.successor != null)
+			return this.successor.corrections(words);
+		HashMap<String, String> corrections = new HashMap<String, String>();
+		for (String word : words) {
+			String correction = this.spelling.correct(word);
+			if (correction != null && !correction.equals(word))
+				corrections.put(word, correction);
+		}
+		return corrections;
+	}
+
+	/**
+	 * Checks whether a question is currently indexed with the content of the
+	 * given hash.
+	 */
+	private boolean isIndexed(int id, int hash) {
+		Integer indexed = this.hashes.get(id);
+		if (indexed != null)
+			return indexed == hash;
+		if (this.deleted.get(id))
+			return false;
+		for (int s = this.segments.size() - 1; s >= 0; s--) {
+			IndexSegment segment = this.segments.get(s);
+			int doc = segment.findDoc(id);
+			if (doc >= 0)
+				return segment.docHash(doc) == hash;
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether a document of a segment has been removed or replaced by
+	 * a more recent version.
+	 */
+	private boolean isShadowed(int id, List<IndexSegment> segments, int s) {
+		if (this.deleted.get(id) || this.norms.containsKey(id))
+			return true;
+		for (int newer = s + 1; newer < segments.size(); newer++)
+			if (segments.get(newer).findDoc(id) >= 0)
+				return true;
+		return false;
+	}
+
+	private static void increment(Map<Integer, Integer> counts, int id) {
+		Integer count = counts.get(id);
+		counts.put(id, count == null ? 1 : count + 1);
+	}
+
+	private static double rate(int matches, int norm) {
+		return norm == 0 ? 0 : 1.0 * matches / norm;
+	}
+
+	/**
+	 * Opens a directory for storing segments and memory-maps all segments
+	 * already stored in it.
+	 *
+	 * @param directory
+	 *            the directory to keep the segments in
+	 * @throws IOException
+	 *             if a segment can't be read
+	 */
+	public synchronized void open(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Couldn't create " + directory);
+		this.directory = directory;
+
+		File[] files = directory.listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.endsWith(".seg");
+			}
+		});
+		Arrays.sort(files, new Comparator<File>() {
+			public int compare(File a, File b) {
+				return generationOf(a) - generationOf(b);
+			}
+		});
+		List<IndexSegment> segments = new ArrayList<IndexSegment>();
+		for (File file : files) {
+			IndexSegment segment = IndexSegment.open(file);
+			for (int t = 0; t < segment.termCount(); t++)
+				this.spelling.add(segment.termAt(t), segment.docFreqAt(t));
+			segments.add(segment);
+			this.generation = Math.max(this.generation, generationOf(file) + 1);
+		}
+		this.segments = Collections.unmodifiableList(segments);
+	}
+
+	/**
+	 * @return whether segments are written to disk at all
+	 */
+	public synchronized boolean isPersistent() {
+		return this.directory != null;
+	}
+
+	/**
+	 * Writes all questions added since the last flush into a new segment.
+	 *
+	 * @return the number of questions written
+	 * @throws IOException
+	 */
+	public synchronized int flush() throws IOException {
+		if (this.directory == null || this.successor != null
+				|| this.norms.isEmpty())
+			return 0;
+		for (BitSet docs : this.postings.values())
+			for (int id = docs.nextSetBit(0); id >= 0; id = docs.nextSetBit(id + 1))
+				if (!this.norms.containsKey(id))
+					docs.clear(id);
+
+		IndexSegment segment = IndexSegment.write(this.nextFile(),
+				this.postings, this.norms, this.hashes);
+		List<IndexSegment> segments = new ArrayList<IndexSegment>(this.segments);
+		segments.add(segment);
+		this.segments = Collections.unmodifiableList(segments);
+
+		this.postings = new HashMap<String, BitSet>();
+		this.norms = new HashMap<Integer, Integer>();
+		this.hashes = new HashMap<Integer, Integer>();
+		return segment.docCount();
+	}
+
+	/**
+	 * Merges all segments into a single one, if there are more than
+	 * {@link #MAX_SEGMENTS}. Searching continues on the old segments while
+	 * the merged one is being written, whereas clearing or replacing the
+	 * index waits for the merge to finish.
+	 *
+	 * @return whether the segments have been merged
+	 * @throws IOException
+	 */
+	public boolean mergeIfNeeded() throws IOException {
+		synchronized (this.mergeLock) {
+			List<IndexSegment> merging;
+			BitSet deleted;
+			File file;
+			synchronized (this) {
+				merging = this.segments;
+				if (this.directory == null || this.successor != null
+						|| merging.size() <= MAX_SEGMENTS)
+					return false;
+				deleted = (BitSet) this.deleted.clone();
+				file = this.nextFile();
+			}
+
+			IndexSegment merged = IndexSegment.merge(file, merging, deleted);
+
+			synchronized (this) {
+				// only segments may have been flushed in the meantime
+				if (this.successor != null
+						|| this.segments.size() < merging.size()
+						|| !this.segments.subList(0, merging.size()).equals(
+								merging)) {
+					merged.delete();
+					return false;
+				}
+				List<IndexSegment> segments = new ArrayList<IndexSegment>();
+				segments.add(merged);
+				segments.addAll(this.segments.subList(merging.size(),
+						this.segments.size()));
+				this.segments = Collections.unmodifiableList(segments);
+				// nobody is searching the merged segments anymore
+				for (IndexSegment segment : merging)
+					segment.delete();
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * @return the segments currently searched, oldest first
+	 */
+	public List<IndexSegment> segments() {
+		return this.segments;
+	}
+
+	private File nextFile() {
+		return new File(this.directory, String.format("%08d.seg",
+				this.generation++));
+	}
+
+	private static int generationOf(File file) {
+		return Integer.parseInt(file.getName().replace(".seg", ""));
+	}
+}
@@ -0,0 +1,130 @@
+package models.SearchEngine;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Finds questions with similar content using locality sensitive hashing: the
+ * {@link MinHash} signature of every question is cut into {@link #BANDS}
+ * bands, and questions are put into one bucket per band. Questions sharing
+ * at least one bucket are candidates, so looking up similar questions only
+ * requires probing a few buckets instead of comparing against every other
+ * question.
+ */
+public class SimilarityIndex {
+
+	/** The number of bands a signature is cut into. */
+	public static final int BANDS = 16;
+	private static final int ROWS = MinHash.SIZE / BANDS;
+
+	private final HashMap<Integer, int[]> signatures = new HashMap<Integer, int[]>();
+	private final HashMap<Long, HashSet<Integer>> buckets = new HashMap<Long, HashSet<Integer>>();
+
+	/**
+	 * Adds the content of a question (replacing any previously added
+	 * content).
+	 *
+	 * @param id
+	 *            the id of the question
+	 * @param content
+	 *            the content of the question
+	 */
+	public void add(int id, String content) {
+		this.remove(id);
+		int[] signature = MinHash.signature(content);
+		if (signature == null)
+			return;
+		this.signatures.put(id, signature);
+		for (int band = 0; band < BANDS; band++) {
+			long key = bucketKey(signature, band);
+			HashSet<Integer> bucket = this.buckets.get(key);
+			if (bucket == null) {
+				bucket = new HashSet<Integer>();
+				this.buckets.put(key, bucket);
+			}
+			bucket.add(id);
+		}
+	}
+
+	/**
+	 * Adds all questions of another index to this one.
+	 *
+	 * @param other
+	 *            the index to take the questions from
+	 */
+	public void addAll(SimilarityIndex other) {
+		for (Map.Entry<Integer, int[]> entry : other.signatures.entrySet())
+			this.signatures.put(entry.getKey(), entry.getValue());
+		for (Map.Entry<Long, HashSet<Integer>> entry : other.buckets.entrySet()) {
+			HashSet<Integer> bucket = this.buckets.get(entry.getKey());
+			if (bucket == null)
+				this.buckets.put(entry.getKey(), new HashSet<Integer>(entry
+						.getValue()));
+			else
+				bucket.addAll(entry.getValue());
+		}
+	}
+
+	/**
+	 * Removes a question.
+	 *
+	 * @param id
+	 *            the id of the question
+	 */
+	public void remove(int id) {
+		int[] signature = this.signatures.remove(id);
+		if (signature == null)
+			return;
+		for (int band = 0; band < BANDS; band++) {
+			long key = bucketKey(signature, band);
+			HashSet<Integer> bucket = this.buckets.get(key);
+			bucket.remove(id);
+			if (bucket.isEmpty())
+				this.buckets.remove(key);
+		}
+	}
+
+	/**
+	 * Get all questions whose content is at least as similar as given to the
+	 * content of a question.
+	 *
+	 * @param id
+	 *            the id of the question
+	 * @param threshold
+	 *            the minimal estimated Jaccard similarity
+	 * @return the estimated similarity of all similar questions by id (not
+	 *         including the question itself)
+	 */
+	public Map<Integer, Double> similarTo(int id, double threshold) {
+		HashMap<Integer, Double> similar = new HashMap<Integer, Double>();
+		int[] signature = this.signatures.get(id);
+		if (signature == null)
+			return similar;
+		for (int band = 0; band < BANDS; band++) {
+			for (int other : this.buckets.get(bucketKey(signature, band))) {
+				if (other == id || similar.containsKey(other))
+					continue;
+				double similarity = MinHash.similarity(signature,
+						this.signatures.get(other));
+				if (similarity >= threshold)
+					similar.put(other, similarity);
+			}
+		}
+		return similar;
+	}
+
+	/**
+	 * @return the number of questions with a signature
+	 */
+	public int size() {
+		return this.signatures.size();
+	}
+
+	private static long bucketKey(int[] signature, int band) {
+		long hash = band;
+		for (int row = band * ROWS; row < (band + 1) * ROWS; row++)
+			hash = 31 * hash + signature[row];
+		return hash;
+	}
+}
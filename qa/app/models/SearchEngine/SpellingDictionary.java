@@ -0,0 +1,222 @@
+package models.SearchEngine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A dictionary of all indexed words which can correct misspelled words.
+ *
+ * Uses the symmetric delete approach: every word is stored under all variants
+ * of its prefix with up to {@link #MAX_DISTANCE} characters deleted. A
+ * misspelled word shares at least one such variant with every word within
+ * that edit distance, so candidates are found by a few hash lookups instead
+ * of comparing against the whole vocabulary. Only the candidates are then
+ * verified by computing the actual edit distance.
+ */
+public class SpellingDictionary {
+
+	/** The maximal edit distance for which corrections are found. */
+	public static final int MAX_DISTANCE = 2;
+
+	/** Only that many leading characters are used for generating deletes. */
+	private static final int PREFIX_LENGTH = 7;
+
+	private final ArrayList<String> words = new ArrayList<String>();
+	private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+	private int[] frequencies = new int[16];
+	/** The number of words with a positive frequency. */
+	private int live;
+
+	/** Word ids by hash of the delete variants (verified on lookup). */
+	private final HashMap<Integer, int[]> deletes = new HashMap<Integer, int[]>();
+
+	/**
+	 * Adds a word to the dictionary or increases its frequency, if it's
+	 * already known.
+	 *
+	 * @param word
+	 *            the word to add
+	 * @param frequency
+	 *            the number of documents containing the word
+	 */
+	public void add(String word, int frequency) {
+		Integer id = this.ids.get(word);
+		if (id == null) {
+			id = this.words.size();
+			this.words.add(word);
+			this.ids.put(word, id);
+			if (id == this.frequencies.length) {
+				int[] grown = new int[2 * id];
+				System.arraycopy(this.frequencies, 0, grown, 0, id);
+				this.frequencies = grown;
+			}
+			for (String variant : variants(word))
+				this.append(variant.hashCode(), id);
+		}
+		if (this.frequencies[id] <= 0 && frequency > 0)
+			this.live++;
+		this.frequencies[id] += frequency;
+	}
+
+	/**
+	 * Decreases the frequency of a word, e.g. because a document containing
+	 * it has been removed. Words no longer contained in any document are
+	 * neither known nor suggested as corrections anymore.
+	 *
+	 * @param word
+	 *            the word to remove
+	 * @param frequency
+	 *            the number of removed documents containing the word
+	 */
+	public void remove(String word, int frequency) {
+		Integer id = this.ids.get(word);
+		if (id == null || this.frequencies[id] <= 0)
+			return;
+		this.frequencies[id] = Math.max(0, this.frequencies[id] - frequency);
+		if (this.frequencies[id] == 0)
+			this.live--;
+	}
+
+	/**
+	 * @param word
+	 *            the word to look up
+	 * @return the number of documents containing the word
+	 */
+	public int frequency(String word) {
+		Integer id = this.ids.get(word);
+		return id == null ? 0 : this.frequencies[id];
+	}
+
+	/**
+	 * Adds all words of another dictionary to this one.
+	 *
+	 * @param other
+	 *            the dictionary to take the words from
+	 */
+	public void addAll(SpellingDictionary other) {
+		for (int id = 0; id < other.words.size(); id++)
+			if (other.frequencies[id] > 0)
+				this.add(other.words.get(id), other.frequencies[id]);
+	}
+
+	/**
+	 * @param word
+	 *            the word to check
+	 * @return whether the word is in the dictionary
+	 */
+	public boolean contains(String word) {
+		return this.frequency(word) > 0;
+	}
+
+	/**
+	 * @return the number of distinct words in the dictionary
+	 */
+	public int size() {
+		return this.live;
+	}
+
+	/**
+	 * Finds the most probable correction of a word, i.e. the dictionary word
+	 * with the smallest edit distance and (among those) the highest
+	 * frequency.
+	 *
+	 * @param word
+	 *            the possibly misspelled word
+	 * @return the word itself, if it is known, a correction or
+	 *         <code>null</code> if there is none within {@link #MAX_DISTANCE}
+	 *         (or less for words shorter than five characters)
+	 */
+	public String correct(String word) {
+		if (this.contains(word))
+			return word;
+		// short words are too easily "corrected" into different ones
+		int maxDistance = Math.min(MAX_DISTANCE, (word.length() - 1) / 2);
+
+		String best = null;
+		int bestDistance = maxDistance + 1;
+		int bestFrequency = 0;
+		HashSet<Integer> checked = new HashSet<Integer>();
+		for (String variant : variants(word)) {
+			int[] candidates = this.deletes.get(variant.hashCode());
+			if (candidates == null)
+				continue;
+			for (int i = 1; i <= candidates[0]; i++) {
+				int id = candidates[i];
+				if (!checked.add(id) || this.frequencies[id] <= 0)
+					continue;
+				String candidate = this.words.get(id);
+				if (Math.abs(candidate.length() - word.length()) > maxDistance)
+					continue;
+				int distance = distance(word, candidate);
+				if (distance < bestDistance || distance == bestDistance
+						&& this.frequencies[id] > bestFrequency) {
+					best = candidate;
+					bestDistance = distance;
+					bestFrequency = this.frequencies[id];
+				}
+			}
+		}
+		return best;
+	}
+
+	private void append(int hash, int id) {
+		// the first element holds the number of ids in use
+		int[] list = this.deletes.get(hash);
+		if (list == null) {
+			list = new int[2];
+			this.deletes.put(hash, list);
+		} else if (list[0] + 1 == list.length) {
+			int[] grown = new int[2 * list.length];
+			System.arraycopy(list, 0, grown, 0, list.length);
+			list = grown;
+			this.deletes.put(hash, list);
+		}
+		list[++list[0]] = id;
+	}
+
+	/**
+	 * Generates the prefix of a word together with all variants of it having
+	 * up to {@link #MAX_DISTANCE} characters deleted.
+	 */
+	private static Set<String> variants(String word) {
+		String prefix = word.length() > PREFIX_LENGTH ? word.substring(0,
+				PREFIX_LENGTH) : word;
+		HashSet<String> variants = new HashSet<String>();
+		variants.add(prefix);
+		HashSet<String> current = variants;
+		for (int d = 0; d < MAX_DISTANCE; d++) {
+			HashSet<String> next = new HashSet<String>();
+			for (String s : current)
+				for (int i = 0; i < s.length(); i++)
+					next.add(s.substring(0, i) + s.substring(i + 1));
+			variants.addAll(next);
+			current = next;
+		}
+		return variants;
+	}
+
+	/**
+	 * Computes the edit distance between two words, counting insertions,
+	 * deletions, substitutions and transpositions of adjacent characters.
+	 */
+	static int distance(String a, String b) {
+		int[][] d = new int[a.length() + 1][b.length() + 1];
+		for (int i = 0; i <= a.length(); i++)
+			d[i][0] = i;
+		for (int j = 0; j <= b.length(); j++)
+			d[0][j] = j;
+		for (int i = 1; i <= a.length(); i++) {
+			for (int j = 1; j <= b.length(); j++) {
+				int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+				d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1),
+						d[i - 1][j - 1] + cost);
+				if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2)
+						&& a.charAt(i - 2) == b.charAt(j - 1))
+					d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + cost);
+			}
+		}
+		return d[a.length()][b.length()];
+	}
+}
@@ -0,0 +1,31 @@
+package models.SearchEngine;
+
+import static models.helpers.SetOperations.difference;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Splits a text into the words relevant for searching, i.e. all words which
+ * are not {@link StopWords}.
+ */
+public class Tokenizer {
+
+	/**
+	 * Get the set of searchable words of a text.
+	 * 
+	 * @param string
+	 *            the text to split up
+	 * @return the distinct words without stop words
+	 */
+	public static Set<String> words(String string) {
+		Set<String> words = new HashSet<String>();
+		if (string == null)
+			return words;
+		for (String word : string.split("\\W+")) {
+			if (word.length() > 0)
+				words.add(word);
+		}
+		return difference(words, StopWords.get());
+	}
+}
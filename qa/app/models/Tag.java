@@ -1,6 +1,8 @@
 package models;
 
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -20,6 +22,13 @@ public class Tag implements Comparable {
 	/** The questions associated with this tag. */
 	private final HashSet<Question> questions = new HashSet<Question>();
 
+	/** The ids of the questions associated with this tag (for counting). */
+	private final BitSet questionIds = new BitSet();
+
+	/** The users watching this tag by id. */
+	private final HashMap<Integer, User> subscribers = new HashMap<Integer, User>();
+	private final BitSet subscriberIds = new BitSet();
+
 	/** A regex a valid tag name has to match. */
 	private static final String tagRegex = "^[^A-Z\\s]{1,32}$";
 
@@ -54,6 +63,7 @@ public class Tag implements Comparable {
 	 */
 	public void register(Question question) {
 		this.questions.add(question);
+		this.questionIds.set(question.id());
 	}
 
 	/**
@@ -61,12 +71,91 @@ public class Tag implements Comparable {
 	 */
 	public void unregister(Question question) {
 		this.questions.remove(question);
+		this.questionIds.clear(question.id());
+
+		this.removeIfUnused();
+	}
+
+	/**
+	 * @param user the user who wants to be notified about new questions with
+	 *             this Tag.
+	 */
+	public synchronized void subscribe(User user) {
+		this.subscribers.put(user.getID(), user);
+		this.subscriberIds.set(user.getID());
+	}
+
+	/**
+	 * @param user the user who no longer wants to be notified.
+	 */
+	public synchronized void unsubscribe(User user) {
+		this.subscribers.remove(user.getID());
+		this.subscriberIds.clear(user.getID());
+		this.removeIfUnused();
+	}
 
+	/**
+	 * @param user the user to check
+	 * @return whether the user is notified about new questions with this Tag.
+	 */
+	public synchronized boolean hasSubscriber(User user) {
+		return this.subscriberIds.get(user.getID());
+	}
+
+	/**
+	 * Adds the ids of all users watching this Tag to a set of ids.
+	 * 
+	 * @param ids the set of user ids to add to
+	 */
+	public synchronized void addSubscriberIds(BitSet ids) {
+		ids.or(this.subscriberIds);
+	}
+
+	/**
+	 * @param id the id of a user
+	 * @return the user with that id, if he watches this Tag (or null).
+	 */
+	public synchronized User getSubscriber(int id) {
+		return this.subscribers.get(id);
+	}
+
+	private void removeIfUnused() {
 		// remove this tag from the database
-		if (this.questions.isEmpty())
+		if (this.questions.isEmpty() && this.subscribers.isEmpty())
 			Database.get().tags().remove(this);
 	}
 
+	/**
+	 * @param question the question to check
+	 * @return whether the question is associated with this Tag.
+	 */
+	public boolean contains(Question question) {
+		return this.questionIds.get(question.id());
+	}
+
+	/**
+	 * Counts the questions associated with this Tag among a set of questions
+	 * by their ids alone, so that the questions needn't be looked at. Only
+	 * the smaller of both sets is walked and nothing is allocated.
+	 * 
+	 * @param ids the ids of the questions to count
+	 * @param size the number of ids (i.e. <code>ids.cardinality()</code>)
+	 * @return the number of questions in <code>ids</code> having this Tag.
+	 */
+	public int countIn(BitSet ids, int size) {
+		BitSet walked = this.questionIds, probed = ids;
+		if (size < this.questions.size()) {
+			walked = ids;
+			probed = this.questionIds;
+		}
+		int count = 0;
+		for (int id = walked.nextSetBit(0); id >= 0; id = walked
+				.nextSetBit(id + 1))
+			if (probed.get(id))
+				count++;
+		return count;
+	}
+
 	public int compareTo(Object o) {
 		return this.name.compareTo(((Tag) o).getName());
 	}
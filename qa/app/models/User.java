@@ -1,21 +1,24 @@
 package models;
 
-import java.math.BigInteger;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import models.database.Database;
 import models.helpers.Filter;
+import models.helpers.OrderedSet;
+import models.helpers.SlidingWindowCounter;
 
 /**
  * A user with a name. Can contain {@link Item}s i.e. {@link Question}s,
@@ -28,10 +31,37 @@ import models.helpers.Filter;
  */
 public class User implements IObserver {
 
+	private final int id;
 	private final String name;
-	private final String password;
+	/** The stored password hash (see {@link Credentials}). */
+	private volatile String password;
 	private String email;
-	private final HashSet<Item> items;
+	/**
+	 * The entries of this user by kind, each ordered by creation time (as
+	 * they're registered when they're created). All registries are guarded
+	 * by this user's lock.
+	 */
+	private final OrderedSet<Question> questions = new OrderedSet<Question>();
+	private final OrderedSet<Answer> answers = new OrderedSet<Answer>();
+	private final OrderedSet<Comment> comments = new OrderedSet<Comment>();
+	/** The votes of this user (which are replaced rather often). */
+	private final LinkedHashSet<Vote> votes = new LinkedHashSet<Vote>();
+	private final NotificationInbox inbox = new NotificationInbox();
+	/** The reputation earned through votes and best answers. */
+	private volatile int reputation;
+	/** The number of upvotes this user has given to each author. */
+	private final HashMap<User, Integer> upvotesFor = new HashMap<User, Integer>();
+	/** How many authors have got a given number of upvotes from this user. */
+	private final HashMap<Integer, Integer> authorsWithUpvotes = new HashMap<Integer, Integer>();
+	private int upvotes;
+	private int maxUpvotesForAuthor;
+	/** The number of posts (questions, answers and comments) per hour. */
+	private final SlidingWindowCounter postRate = new SlidingWindowCounter(60,
+			60 * 1000);
+	/** The questions observed by this user, in the order he started to. */
+	private final LinkedHashSet<Question> watched = new LinkedHashSet<Question>();
+	/** The tags watched by this user. */
+	private final HashSet<Tag> watchedTags = new HashSet<Tag>();
 	private String fullname;
 	protected Date dateOfBirth;
 	private String website;
@@ -41,11 +71,27 @@ public class User implements IObserver {
 	private String statustext;
 	private boolean isBlocked = false;
 	private boolean isModerator = false;
+	/** Whether this user is being deleted (see {@link #hide()}). */
+	private volatile boolean isDeleted = false;
+	/** The id of the most recent notification sent by mail. */
+	private int digestCursor = -1;
 	
+	/** The reputation gained for an upvote of a question. */
+	public static final int REPUTATION_QUESTION_UPVOTE = 5;
+	/** The reputation gained for an upvote of an answer. */
+	public static final int REPUTATION_ANSWER_UPVOTE = 10;
+	/** The reputation gained (i.e. lost) for a downvote. */
+	public static final int REPUTATION_DOWNVOTE = -2;
+	/** The reputation gained for a best answer. */
+	public static final int REPUTATION_BEST_ANSWER = 15;
+
 	public static final String DATE_FORMAT_CH = "dd.MM.yyyy";
 	public static final String DATE_FORMAT_US = "MM/dd/yyyy";
 	public static final String DATE_FORMAT_ISO = "yyyy-MM-dd";
 
+	/** An auto-incrementing counter for producing unique values as IDs. */
+	private static final AtomicInteger auto_increment = new AtomicInteger();
+
 
 	/**
 	 * Creates a <code>User</code> with a given name.
@@ -53,15 +99,24 @@ public class User implements IObserver {
 	 * @param name the name of the <code>User</code>
 	 */
 	public User(String name, String password) {
+		this.id = auto_increment.getAndIncrement();
 		this.name = name;
-		this.password = encrypt(password);
-		this.items = new HashSet<Item>();
+		this.password = Credentials.get().hash(password);
 	}
 	
 	public boolean canEdit(Entry entry) {
 		return (entry.owner() == this && !this.isBlocked()) || this.isModerator();
 	}
 
+	/**
+	 * Gets the ID of the <code>User</code> (unique, but not persistent).
+	 * 
+	 * @return ID of the <code>User</code>
+	 */
+	public int getID() {
+		return this.id;
+	}
+
 	/**
 	 * Gets the name of the <code>User</code>.
 	 * 
@@ -78,23 +133,24 @@ public class User implements IObserver {
 	 * @return the encrypted password
 	 */
 	public static String encrypt(String password) {
-		try {
-			MessageDigest m = MessageDigest.getInstance("SHA-1");
-			return new BigInteger(1, m.digest(password.getBytes()))
-					.toString(16);
-		} catch (NoSuchAlgorithmException e) {
-			return password;
-		}
+		return Credentials.sha1Hex(password);
 	}
 
 	/**
-	 * Encrypt the password and check if it is the same as the stored one.
+	 * Encrypt the password and check if it is the same as the stored one. If
+	 * it is and the stored hash is outdated, it's replaced with a new one.
 	 * 
 	 * @param passwort
 	 * @return true if the password is right
 	 */
 	public boolean checkPW(String password) {
-		return this.password.equals(encrypt(password));
+		Credentials credentials = Credentials.get();
+		String stored = this.password;
+		if (!credentials.verify(password, stored))
+			return false;
+		if (credentials.needsRehash(stored))
+			this.password = credentials.hash(password);
+		return true;
 	}
 
 	/**
@@ -115,7 +171,16 @@ public class User implements IObserver {
 	 * @param item the {@link Item} to register
 	 */
 	public void registerItem(Item item) {
-		this.items.add(item);
+		// notifications add themselves to the inbox once they're initialized
+		Collection registry = this.registryOf(item.getClass());
+		if (registry != null)
+			synchronized (this) {
+				registry.add(item);
+			}
+		if (item instanceof Entry) {
+			this.postRate.add(item.timestamp());
+			this.isSpammer();
+		}
 	}
 
 	/**
@@ -127,28 +192,110 @@ public class User implements IObserver {
 	 * @return true if the username is available.
 	 */
 	public static boolean isAvailable(String username) {
-		return (Database.get().users().get(username.toLowerCase()) == null);
+		return Database.get().users().get(username) == null;
 	}
 
 	/**
 	 * Causes the <code>User</code> to delete all his {@link Item}s.
 	 */
 	public void delete() {
-		// operate on a clone to prevent a ConcurrentModificationException
-		HashSet<Item> clone = (HashSet<Item>) this.items.clone();
-		for (Item item : clone)
-			item.unregister();
-		this.items.clear();
+		this.hide();
+		while (this.deleteItems(Integer.MAX_VALUE) > 0)
+			;
+	}
+
+	/**
+	 * Removes the <code>User</code> from the database right away, so that he
+	 * can neither log in nor be found any longer, while his {@link Item}s
+	 * might still be deleted in the background (see {@link #deleteItems}).
+	 */
+	public void hide() {
+		this.isDeleted = true;
 		Database.get().users().remove(this.name);
 	}
 
+	/**
+	 * @return whether this <code>User</code> has been (or is being) deleted
+	 */
+	public boolean isDeleted() {
+		return this.isDeleted;
+	}
+
+	/**
+	 * Deletes a batch of {@link Item}s of a hidden <code>User</code>: first
+	 * his votes, then his comments, answers and questions. Once there are none
+	 * left, his notifications, watched questions and watched tags go as well.
+	 * 
+	 * @param max the maximal number of items to delete
+	 * @return the number of items processed (0 once there are none left)
+	 */
+	public int deleteItems(int max) {
+		List<Item> batch = this.takeItems(max, this.votes, this.comments,
+				this.answers, this.questions);
+		if (batch.isEmpty()) {
+			for (Notification notification : this.inbox.all())
+				notification.unregister();
+			for (Question question : this.getWatchedQuestions())
+				this.stopObserving(question);
+			for (Tag tag : this.getWatchedTags())
+				this.stopWatching(tag);
+			return 0;
+		}
+		for (Item item : batch)
+			// answers and comments might have gone along with a question
+			if (item.owner() == this)
+				item.unregister();
+		return batch.size();
+	}
+
+	/**
+	 * Anonymizes a batch of questions (and optionally answers and comments)
+	 * of a hidden <code>User</code>, so that they're kept when he's deleted.
+	 * 
+	 * @param max the maximal number of entries to anonymize
+	 * @param doAnswers whether to anonymize this user's answers as well
+	 * @param doComments whether to anonymize this user's comments as well
+	 * @return the number of entries processed (0 once there are none left)
+	 */
+	public int anonymizeItems(int max, boolean doAnswers, boolean doComments) {
+		List<Item> batch = this.takeItems(max, this.questions,
+				doAnswers ? this.answers : new OrderedSet(),
+				doComments ? this.comments : new OrderedSet());
+		for (Item item : batch)
+			if (item.owner() == this)
+				((Entry) item).anonymize();
+		return batch.size();
+	}
+
+	/**
+	 * Takes up to <code>max</code> items out of the given registries (in
+	 * order), the oldest ones first.
+	 */
+	private synchronized List<Item> takeItems(int max,
+			Collection... registries) {
+		List<Item> batch = new ArrayList<Item>();
+		for (Collection registry : registries)
+			for (Iterator it = registry.iterator(); it.hasNext()
+					&& batch.size() < max;) {
+				batch.add((Item) it.next());
+				it.remove();
+			}
+		return batch;
+	}
+
 	/**
 	 * Unregisters an {@link Item} which has been deleted.
 	 * 
 	 * @param item the {@link Item} to unregister
 	 */
 	public void unregister(Item item) {
-		this.items.remove(item);
+		Collection registry = this.registryOf(item.getClass());
+		if (item instanceof Notification)
+			this.inbox.remove((Notification) item);
+		// deleted users' items are taken out of the registries beforehand
+		else if (!this.isDeleted && registry != null
+				&& this.removeFrom(registry, item) && item instanceof Entry)
+			this.postRate.remove(item.timestamp());
 	}
 
 	/**
@@ -159,7 +306,48 @@ public class User implements IObserver {
 	 * @return true if the {@link Item} is registered
 	 */
 	public boolean hasItem(Item item) {
-		return this.items.contains(item);
+		if (item instanceof Notification)
+			return this.inbox.contains((Notification) item);
+		Collection registry = this.registryOf(item.getClass());
+		if (registry == null)
+			return false;
+		synchronized (this) {
+			return registry.contains(item);
+		}
+	}
+
+	private synchronized boolean removeFrom(Collection registry, Item item) {
+		return registry.remove(item);
+	}
+
+	/**
+	 * Gets the reputation earned through votes on this user's entries and his
+	 * best answers.
+	 * 
+	 * @return the reputation
+	 */
+	public int getReputation() {
+		return this.reputation;
+	}
+
+	/**
+	 * Gets the position of this user on the {@link Leaderboard}.
+	 * 
+	 * @return the rank (starting at 1) or 0 if this user isn't ranked
+	 */
+	public int getRank() {
+		return Leaderboard.get().rankOf(this);
+	}
+
+	/**
+	 * Changes the reputation (e.g. because of a new vote or one which has been
+	 * retracted) and moves this user on the {@link Leaderboard} accordingly.
+	 * 
+	 * @param delta the reputation gained or lost
+	 */
+	synchronized void addReputation(int delta) {
+		this.reputation += delta;
+		Leaderboard.get().update(this, this.reputation);
 	}
 
 	/**
@@ -170,14 +358,7 @@ public class User implements IObserver {
 	 *         <code>User</code> in this Hour.
 	 */
 	public int howManyItemsPerHour() {
-		Date now = SystemInformation.get().now();
-		int i = 0;
-		for (Item item : this.items) {
-			if ((now.getTime() - item.timestamp().getTime()) <= 60 * 60 * 1000) {
-				i++;
-			}
-		}
-		return i;
+		return this.postRate.count(SystemInformation.get().now());
 	}
 
 	/**
@@ -187,29 +368,76 @@ public class User implements IObserver {
 	 * @return True if the <code>User</code> is supporting somebody.
 	 */
 	public boolean isMaybeCheater() {
-		HashMap<User, Integer> votesForUser = new HashMap<User, Integer>();
-		for (Item item : this.items) {
-			if (item instanceof Vote && ((Vote) item).up()) {
-				Integer count = votesForUser.get(item.owner());
-				if (count == null)
-					count = 0;
-				votesForUser.put(item.owner(), count + 1);
-			}
+		synchronized (this.upvotesFor) {
+			if (this.maxUpvotesForAuthor <= 3
+					|| 2 * this.maxUpvotesForAuthor <= this.upvotes)
+				return false;
 		}
+		this.setStatusMessage("User voted up somebody");
+		this.setBlocked(true);
+		return true;
+	}
 
-		if (votesForUser.isEmpty())
-			return false;
+	/**
+	 * Counts a new {@link Vote} by this <code>User</code> and checks whether
+	 * he's now supporting somebody.
+	 * 
+	 * @param vote the new vote
+	 */
+	void registerUpvote(Vote vote) {
+		if (!vote.up() || vote.author() == null)
+			return;
+		this.countUpvotes(vote.author(), 1);
+		this.isMaybeCheater();
+	}
 
-	    Integer maxCount = Collections.max(votesForUser.values());
-		if (maxCount > 3 && maxCount / votesForUser.size() > 0.5) {
-			this.setStatusMessage("User voted up somebody");
-			this.setBlocked(true);
-			return true;
-		} else {
-			return false;
+	/**
+	 * Uncounts a retracted or deleted {@link Vote} by this <code>User</code>.
+	 * 
+	 * @param vote the vote which is being unregistered
+	 */
+	void unregisterUpvote(Vote vote) {
+		if (vote.up() && vote.author() != null)
+			this.countUpvotes(vote.author(), -1);
+	}
+
+	/**
+	 * Updates the number of upvotes for an author, keeping track of the
+	 * highest such number without having to look at all of them.
+	 */
+	private void countUpvotes(User author, int delta) {
+		synchronized (this.upvotesFor) {
+			Integer old = this.upvotesFor.get(author);
+			int before = old == null ? 0 : old;
+			int after = before + delta;
+			if (after < 0)
+				return;
+			if (after == 0)
+				this.upvotesFor.remove(author);
+			else
+				this.upvotesFor.put(author, after);
+			this.countAuthors(before, -1);
+			this.countAuthors(after, 1);
+			this.upvotes += delta;
+			if (after > this.maxUpvotesForAuthor)
+				this.maxUpvotesForAuthor = after;
+			else if (before == this.maxUpvotesForAuthor
+					&& !this.authorsWithUpvotes.containsKey(before))
+				this.maxUpvotesForAuthor = after;
 		}
 	}
 
+	private void countAuthors(int upvotes, int delta) {
+		if (upvotes == 0)
+			return;
+		Integer old = this.authorsWithUpvotes.get(upvotes);
+		int count = (old == null ? 0 : old) + delta;
+		if (count == 0)
+			this.authorsWithUpvotes.remove(upvotes);
+		else
+			this.authorsWithUpvotes.put(upvotes, count);
+	}
+
 	/**
 	 * Anonymizes all questions, answers and comments by this user.
 	 * 
@@ -217,15 +445,15 @@ public class User implements IObserver {
 	 * @param doComments - whether to anonymize this user's comments as well
 	 */
 	public void anonymize(boolean doAnswers, boolean doComments) {
-		// operate on a clone to prevent a ConcurrentModificationException
-		HashSet<Item> clone = (HashSet<Item>) this.items.clone();
-		for (Item item : clone) {
-			if (item instanceof Question || doAnswers && item instanceof Answer
-					|| doComments && item instanceof Comment) {
-				((Entry) item).anonymize();
-				this.items.remove(item);
-			}
-		}
+		// operate on copies to prevent a ConcurrentModificationException
+		for (Question question : this.copyOf(this.questions))
+			question.anonymize();
+		if (doAnswers)
+			for (Answer answer : this.copyOf(this.answers))
+				answer.anonymize();
+		if (doComments)
+			for (Comment comment : this.copyOf(this.comments))
+				comment.anonymize();
 	}
 
 
@@ -363,10 +591,23 @@ public class User implements IObserver {
 		return this.biography;
 	}
 
-	public String getSHA1Password() {
+	/**
+	 * @return the stored password hash, which is a PBKDF2 hash instead of a
+	 *         SHA-1 digest once {@link Pbkdf2Credentials} are in use
+	 */
+	public String getPasswordHash() {
 		return this.password;
 	}
 
+	/**
+	 * @deprecated the stored hash isn't necessarily a SHA-1 digest; use
+	 *             {@link #getPasswordHash()} instead
+	 */
+	@Deprecated
+	public String getSHA1Password() {
+		return getPasswordHash();
+	}
+
 	public String getStatusMessage() {
 		return this.statustext;
 	}
@@ -400,6 +641,10 @@ public class User implements IObserver {
 	 */
 	public void startObserving(IObservable what) {
 		what.addObserver(this);
+		if (what instanceof Question)
+			synchronized (this.watched) {
+				this.watched.add((Question) what);
+			}
 	}
 
 	/**
@@ -412,7 +657,7 @@ public class User implements IObserver {
 	}
 	
 	public static User get(String name) {
-		return Database.get().users().get(name.toLowerCase());
+		return Database.get().users().get(name);
 	}
 
 	/**
@@ -422,15 +667,120 @@ public class User implements IObserver {
 	 */
 	public void stopObserving(IObservable what) {
 		what.removeObserver(this);
+		if (what instanceof Question)
+			this.unregisterWatched((Question) what);
+	}
+
+	/**
+	 * Forgets about a watched question (e.g. because it has been deleted).
+	 * 
+	 * @param question the question no longer watched
+	 */
+	void unregisterWatched(Question question) {
+		synchronized (this.watched) {
+			this.watched.remove(question);
+		}
+	}
+
+	/**
+	 * Gets all questions this user is observing.
+	 * 
+	 * @return the watched questions, in the order they've been watched
+	 */
+	public List<Question> getWatchedQuestions() {
+		synchronized (this.watched) {
+			return new ArrayList<Question>(this.watched);
+		}
+	}
+
+	/**
+	 * Gets a page of the questions this user is observing.
+	 * 
+	 * @param offset the number of questions to skip
+	 * @param count the maximal number of questions to get
+	 * @return the watched questions, in the order they've been watched
+	 */
+	public List<Question> getWatchedQuestions(int offset, int count) {
+		List<Question> page = new ArrayList<Question>();
+		synchronized (this.watched) {
+			Iterator<Question> it = this.watched.iterator();
+			for (int i = 0; i < offset && it.hasNext(); i++)
+				it.next();
+			while (it.hasNext() && page.size() < count)
+				page.add(it.next());
+		}
+		return page;
+	}
+
+	/**
+	 * @return the number of questions this user is observing
+	 */
+	public int countWatchedQuestions() {
+		synchronized (this.watched) {
+			return this.watched.size();
+		}
+	}
+
+	/**
+	 * Start watching a tag, i.e. get notified about new questions with it.
+	 * 
+	 * @param tag the tag to watch
+	 */
+	public void startWatching(Tag tag) {
+		synchronized (this.watchedTags) {
+			this.watchedTags.add(tag);
+		}
+		tag.subscribe(this);
+	}
+
+	/**
+	 * Checks if a tag is being watched.
+	 * 
+	 * @param tag the tag to check
+	 * @return true, if the tag is being watched
+	 */
+	public boolean isWatching(Tag tag) {
+		return tag.hasSubscriber(this);
+	}
+
+	/**
+	 * Stop watching a tag.
+	 * 
+	 * @param tag the tag to unwatch
+	 */
+	public void stopWatching(Tag tag) {
+		synchronized (this.watchedTags) {
+			this.watchedTags.remove(tag);
+		}
+		tag.unsubscribe(this);
+	}
+
+	/**
+	 * Get all tags this user is watching.
+	 * 
+	 * @return the watched tags
+	 */
+	public List<Tag> getWatchedTags() {
+		synchronized (this.watchedTags) {
+			return new ArrayList<Tag>(this.watchedTags);
+		}
 	}
 
 	/**
 	 * @see models.IObserver#observe(models.IObservable, java.lang.Object)
 	 */
 	public void observe(IObservable o, Object arg) {
-		if (o instanceof Question && arg instanceof Answer
-				&& ((Answer) arg).owner() != this)
-			new Notification(this, (Answer) arg);
+		if (o instanceof Question && arg instanceof Answer) {
+			// a new answer to a watched question
+			Answer answer = (Answer) arg;
+			if (answer.owner() != this
+					&& !this.inbox.coalesce((Question) o, answer))
+				new Notification(this, answer);
+		} else if (arg instanceof Question) {
+			// a new question with a watched tag
+			if (((Question) arg).owner() != this)
+				new Notification(this, (Question) arg);
+		}
 	}
 
 	/**
@@ -446,16 +796,8 @@ public class User implements IObserver {
 	 * 
 	 * @return List<Question> The last three <code>Question</code>s of this <code>User</code>
 	 */
-	public List<Question> getRecentQuestions() {
-		List<Question> recentQuestions = this.getQuestions();
-		Collections.sort(recentQuestions, new Comparator() {
-			public int compare(Object o1, Object o2) {
-				return ((Item) o2).timestamp().compareTo(((Item) o1).timestamp());
-			}
-		}); 
-		if (recentQuestions.size() > 3)
-			return recentQuestions.subList(0, 3);
-		return recentQuestions;
+	public synchronized List<Question> getRecentQuestions() {
+		return this.questions.newest(3);
 	}
 
 	/**
@@ -463,16 +805,8 @@ public class User implements IObserver {
 	 * 
 	 * @return List<Answer> The last three <code>Answer</code>s of this <code>User</code>
 	 */
-	public List<Answer> getRecentAnswers() {
-		List<Answer> recentAnswers = this.getAnswers();
-		Collections.sort(recentAnswers, new Comparator() {
-			public int compare(Object o1, Object o2) {
-				return ((Item) o2).timestamp().compareTo(((Item) o1).timestamp());
-			}
-		}); 
-		if (recentAnswers.size() > 3)
-			return recentAnswers.subList(0, 3);
-		return recentAnswers;
+	public synchronized List<Answer> getRecentAnswers() {
+		return this.answers.newest(3);
 	}
 	
 	/**
@@ -480,16 +814,8 @@ public class User implements IObserver {
 	 * 
 	 * @return List<Comment> The last three <code>Comment</code>s of this <code>User</code>
 	 */
-	public List<Comment> getRecentComments() {
-		List<Comment> recentComments = this.getComments();
-		Collections.sort(recentComments, new Comparator() {
-			public int compare(Object o1, Object o2) {
-				return ((Item) o2).timestamp().compareTo(((Item) o1).timestamp());
-			}
-		}); 
-		if (recentComments.size() > 3)
-			return recentComments.subList(0, 3);
-		return recentComments;
+	public synchronized List<Comment> getRecentComments() {
+		return this.comments.newest(3);
 	}
 
 	/*
@@ -509,6 +835,13 @@ public class User implements IObserver {
 		return this.getItemsByType(Question.class, null);
 	}
 
+	/**
+	 * @return the number of <code>Question</code>s of this <code>User</code>
+	 */
+	public synchronized int countQuestions() {
+		return this.questions.size();
+	}
+
 	/**
 	 * Get a sorted ArrayList of all <code>Answer</code>s of this <code>User</code>.
 	 * 
@@ -517,6 +850,13 @@ public class User implements IObserver {
 	public ArrayList<Answer> getAnswers() {
 		return this.getItemsByType(Answer.class, null);
 	}
+
+	/**
+	 * @return the number of <code>Answer</code>s of this <code>User</code>
+	 */
+	public synchronized int countAnswers() {
+		return this.answers.size();
+	}
 	
 	/**
 	 * Get a sorted ArrayList of all <code>Comment</code>s of this <code>User</code>
@@ -527,6 +867,20 @@ public class User implements IObserver {
 		return this.getItemsByType(Comment.class, null);
 	}
 
+	/**
+	 * @return the number of <code>Comment</code>s of this <code>User</code>
+	 */
+	public synchronized int countComments() {
+		return this.comments.size();
+	}
+
+	/**
+	 * @return the number of <code>Vote</code>s of this <code>User</code>
+	 */
+	public synchronized int countVotes() {
+		return this.votes.size();
+	}
+
 	/**
 	 * Get an ArrayList of all best rated answers
 	 * 
@@ -554,34 +908,31 @@ public class User implements IObserver {
 	}
 
 	/**
-	 * Get an ArrayList of all notifications of this user, sorted most-recent
-	 * one first and optionally fulfilling one filter criterion.
+	 * Get the inbox holding the notifications of this user.
 	 * 
+	 * @return the inbox
+	 */
+	NotificationInbox inbox() {
+		return this.inbox;
+	}
+
+	/**
+	 * Get an ArrayList of the most recent notifications of this user, sorted
+	 * most-recent one first and optionally fulfilling one filter criterion.
+	 * 
+	 * @param count
+	 *            the maximal number of notifications to look at
 	 * @param filter
-	 *            an optional name of a filter method (e.g. "isNew")
-	 * @return ArrayList<Notification> All notifications of this user
+	 *            an optional filter the notifications have to pass
+	 * @return ArrayList<Notification> The notifications of this user
 	 */
-	protected ArrayList<Notification> getAllNotifications(Filter filter) {
+	protected ArrayList<Notification> getAllNotifications(int count,
+			Filter filter) {
 		ArrayList<Notification> result = new ArrayList<Notification>();
-		/*
-		 * Hack: remove all notifications to deleted answers
-		 * 
-		 * unfortunately, there's currently no other way to achieve this, as
-		 * there is no global list of all existing notifications nor an easy way
-		 * to register all users for observing the deletion of answers (because
-		 * there's no global list of all existing users, either)
-		 */
-		ArrayList<Notification> notifications = this.getItemsByType(
-				Notification.class, filter);
-		for (Notification n : notifications) {
-			if (n.getAbout() instanceof Answer) {
-				Answer answer = (Answer) n.getAbout();
-				if (answer.getQuestion() != null)
-					result.add(n);
-				else
-					n.unregister();
-			}
-		}
+		// notifications about deleted answers are removed right away
+		for (Notification n : this.inbox.latest(count))
+			if (filter == null || (Boolean) filter.visit(n))
+				result.add(n);
 		return result;
 	}
 
@@ -592,7 +943,47 @@ public class User implements IObserver {
 	 * @return ArrayList<Notification> All notifications of this user
 	 */
 	public ArrayList<Notification> getNotifications() {
-		return this.getAllNotifications(null);
+		return this.getAllNotifications(NotificationInbox.CAPACITY, null);
+	}
+
+	/**
+	 * Get an ArrayList of the most recent notifications of this user.
+	 * 
+	 * @param count
+	 *            the maximal number of notifications to get
+	 * @return ArrayList<Notification> The most recent notifications
+	 */
+	public ArrayList<Notification> getNotifications(int count) {
+		return this.getAllNotifications(count, null);
+	}
+
+	/**
+	 * Get the notifications which have been added or updated since a given
+	 * one (e.g. for updating a page without reloading it).
+	 * 
+	 * @param cursor
+	 *            the sequence number of the most recent notification already
+	 *            known (see {@link Notification#getSequence()})
+	 * @return the newer notifications, most recent one first
+	 */
+	public List<Notification> getNotificationsSince(int cursor) {
+		return this.inbox.since(cursor);
+	}
+
+	/**
+	 * Waits (without blocking a thread) for notifications which are newer
+	 * than a given one.
+	 * 
+	 * @param cursor
+	 *            the sequence number of the most recent notification already
+	 *            known
+	 * @param timeout
+	 *            the maximal number of milliseconds to wait
+	 * @return a future which is done as soon as there are newer notifications
+	 *         or the timeout has passed
+	 */
+	public Future<Boolean> awaitNotificationsSince(int cursor, long timeout) {
+		return this.inbox.awaitSince(cursor, timeout);
 	}
 
 	/**
@@ -601,11 +992,21 @@ public class User implements IObserver {
 	 * @return the unread notifications
 	 */
 	public ArrayList<Notification> getNewNotifications() {
-		return this.getAllNotifications(new Filter<Notification, Boolean>() {
-			public Boolean visit(Notification n) {
-				return n.isNew();
-			}
-		});
+		return this.getAllNotifications(NotificationInbox.CAPACITY,
+				new Filter<Notification, Boolean>() {
+					public Boolean visit(Notification n) {
+						return n.isNew();
+					}
+				});
+	}
+
+	/**
+	 * Counts the unread notifications of this user.
+	 * 
+	 * @return the number of unread notifications
+	 */
+	public int countNewNotifications() {
+		return this.inbox.unreadCount();
 	}
 
 	/**
@@ -614,33 +1015,69 @@ public class User implements IObserver {
 	 * @return a very recent notification (or null, if there isn't any)
 	 */
 	public Notification getVeryRecentNewNotification() {
-		for (Notification n : this.getNewNotifications())
-			if (n.isVeryRecent())
+		if (this.inbox.unreadCount() == 0)
+			return null;
+		// notifications are ordered by age, so stop at the first old one
+		for (Notification n : this.getNotifications()) {
+			if (!n.isVeryRecent())
+				return null;
+			if (n.isNew())
 				return n;
+		}
 		return null;
 	}
 
 	/**
-	 * Gets a notification by its id value.
+	 * Deletes old notifications of this user.
+	 * 
+	 * @param before
+	 *            the date before which notifications expire
+	 * @param maxCount
+	 *            the maximal number of notifications to keep
+	 * @return the number of deleted notifications
+	 */
+	public int expireNotifications(Date before, int maxCount) {
+		return this.inbox.expire(before, maxCount).size();
+	}
+
+	/**
+	 * Get the unread notifications which haven't been sent by mail yet.
 	 * 
-	 * NOTE: slightly hacky since we don't track notifications in a separate
-	 * IDTable but in this.items like everything else - this should get fixed
-	 * once we migrate to using a real DB.
+	 * @return the notifications for the next digest, most recent one first
+	 */
+	public List<Notification> getNotificationsForDigest() {
+		List<Notification> digest = new ArrayList<Notification>();
+		for (Notification n : this.inbox.since(this.digestCursor))
+			if (n.isNew())
+				digest.add(n);
+		return digest;
+	}
+
+	/**
+	 * Remembers which notifications have been sent by mail.
+	 * 
+	 * @param cursor
+	 *            the sequence number of the most recent notification sent
+	 */
+	public void setDigestCursor(int cursor) {
+		this.digestCursor = cursor;
+	}
+
+	/**
+	 * Gets a notification by its id value.
 	 * 
 	 * @param id
 	 *            the notification's id
 	 * @return a notification with the given id
 	 */
 	public Notification getNotification(int id) {
-		for (Notification n : this.getNotifications())
-			if (n.getID() == id)
-				return n;
-		return null;
+		return this.inbox.get(id);
 	}
 
 	/**
 	 * Get an ArrayList of all items of this user being an instance of a
 	 * specific type and optionally fulfilling an additional filter criterion.
+	 * Only the items of the requested kind are looked at.
 	 * 
 	 * @param type
 	 *            the type
@@ -652,11 +1089,35 @@ public class User implements IObserver {
 	 */
 	protected ArrayList getItemsByType(Class type, Filter filter) {
 		ArrayList items = new ArrayList();
-		for (Item item : this.items)
+		Collection registry = this.registryOf(type);
+		if (registry == null)
+			return items;
+		for (Item item : (Collection<Item>) this.copyOf(registry))
 			if (type.isInstance(item)
 					&& (filter == null || (Boolean) filter.visit(item)))
 				items.add(item);
-		Collections.sort(items);
+		if (type != Vote.class)
+			Collections.sort(items);
 		return items;
 	}
+
+	private synchronized <T> List<T> copyOf(Collection<T> registry) {
+		return new ArrayList<T>(registry);
+	}
+
+	/**
+	 * @return the registry for items of the given kind (or <code>null</code>
+	 *         for notifications)
+	 */
+	private Collection registryOf(Class type) {
+		if (Question.class.isAssignableFrom(type))
+			return this.questions;
+		if (Answer.class.isAssignableFrom(type))
+			return this.answers;
+		if (Comment.class.isAssignableFrom(type))
+			return this.comments;
+		if (Vote.class.isAssignableFrom(type))
+			return this.votes;
+		return null;
+	}
 }
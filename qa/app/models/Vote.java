@@ -12,6 +12,8 @@ public class Vote extends Item {
 
 	private boolean up;
 	private Entry entry;
+	/** The owner of the entry at the time of voting. */
+	private final User author;
 
 	/**
 	 * Create a <code>Vote</code>.
@@ -24,6 +26,9 @@ public class Vote extends Item {
 		super(owner);
 		this.up = up;
 		this.entry = entry;
+		this.author = entry.owner();
+		if (this.author != null)
+			this.author.addReputation(this.reputation());
 	}
 
 	/**
@@ -32,6 +37,9 @@ public class Vote extends Item {
 	 */
 	public void unregister() {
 		entry.unregister(this);
+		this.owner().unregisterUpvote(this);
+		if (this.author != null)
+			this.author.addReputation(-this.reputation());
 		this.unregisterUser();
 	}
 
@@ -44,4 +52,24 @@ public class Vote extends Item {
 		return this.up;
 	}
 
+	/**
+	 * Get the author of the voted {@link Entry} (even if it has been
+	 * anonymized since).
+	 * 
+	 * @return the author or <code>null</code> for anonymous entries
+	 */
+	User author() {
+		return this.author;
+	}
+
+	/**
+	 * @return the reputation this vote earns the author of the voted entry
+	 */
+	private int reputation() {
+		if (!this.up)
+			return User.REPUTATION_DOWNVOTE;
+		return this.entry instanceof Answer ? User.REPUTATION_ANSWER_UPVOTE
+				: User.REPUTATION_QUESTION_UPVOTE;
+	}
+
 }
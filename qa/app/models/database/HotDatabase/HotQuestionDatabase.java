@@ -1,10 +1,18 @@
 package models.database.HotDatabase;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import models.Answer;
 import models.IDTable;
@@ -12,12 +20,20 @@ import models.Question;
 import models.Tag;
 import models.User;
 import models.SearchEngine.SearchFilter;
+import models.SearchEngine.SearchIndex;
+import models.SearchEngine.Tokenizer;
+import models.database.Database;
 import models.database.IQuestionDatabase;
 import models.helpers.Filter;
 import models.helpers.Mapper;
 
 public class HotQuestionDatabase implements IQuestionDatabase {
 
+	/** Minimal content similarity of related questions. */
+	private static final double RELATED_SIMILARITY = 0.25;
+	/** Minimal content similarity of possible duplicates. */
+	private static final double DUPLICATE_SIMILARITY = 0.8;
+
 	private final  IDTable<Question> questions = new IDTable();
 
 	public  List<Question> searchFor(String term) {
@@ -25,7 +41,38 @@ public class HotQuestionDatabase implements IQuestionDatabase {
 		for (String s : term.split("\\W+")) {
 			tags.add(Tag.get(s));
 		}
-		return Mapper.sort(questions, new SearchFilter(term, tags));
+		// search for the corrections of misspelled words instead
+		Set<String> words = Tokenizer.words(term);
+		Map<String, String> corrections = SearchIndex.get().corrections(words);
+		words.removeAll(corrections.keySet());
+		words.addAll(corrections.values());
+
+		// only rate questions found in the index or having one of the tags
+		Map<Question, Double> textRatings = SearchIndex.get().search(words,
+				questions);
+		Set<Question> candidates = new HashSet<Question>(textRatings.keySet());
+		for (Tag tag : tags)
+			if (tag != null)
+				candidates.addAll(tag.getQuestions());
+		return Mapper.sort(candidates, new SearchFilter(textRatings, tags));
+	}
+
+	public String suggestFor(String term) {
+		Map<String, String> corrections = SearchIndex.get().corrections(
+				Tokenizer.words(term));
+		if (corrections.isEmpty())
+			return null;
+
+		StringBuffer suggestion = new StringBuffer();
+		Matcher words = Pattern.compile("\\w+").matcher(term);
+		while (words.find()) {
+			String correction = corrections.get(words.group());
+			words.appendReplacement(suggestion, Matcher
+					.quoteReplacement(correction != null ? correction : words
+							.group()));
+		}
+		words.appendTail(suggestion);
+		return suggestion.toString();
 	}
 
 	/**
@@ -44,7 +91,7 @@ public class HotQuestionDatabase implements IQuestionDatabase {
 	 * @return all <code>Questions</code>
 	 */
 	public List<Question> all() {
-		List<Question> list = new ArrayList<Question>(questions.values());
+		List<Question> list = questions.snapshot();
 		Collections.sort(list);
 		return list;
 	}
@@ -54,11 +101,18 @@ public class HotQuestionDatabase implements IQuestionDatabase {
 	}
 
 	public void remove(int id) {
+		Question question = questions.get(id);
 		questions.remove(id);
+		if (question != null)
+			SearchIndex.get().remove(id, question.content());
+		else
+			SearchIndex.get().remove(id);
 	}
 
 	public int register(Question q) {
-		return questions.add(q);
+		int id = questions.add(q);
+		SearchIndex.get().add(id, q.content());
+		return id;
 	}
 
 	public int count() {
@@ -97,13 +151,55 @@ public class HotQuestionDatabase implements IQuestionDatabase {
 	}
 	
 	public List<Question> findSimilar(Question q) {
-		List<Question> result = Mapper.sort(questions,
-				new SearchFilter("", new HashSet<Tag>(q.getTags())));
-		result.remove(q); // don't find the question itself!
-		return result;
+		// only rate questions sharing a tag or having similar content
+		Set<Tag> tags = new HashSet<Tag>(q.getTags());
+		Map<Question, Double> contentRatings = SearchIndex.get().similarTo(
+				q.id(), RELATED_SIMILARITY, questions);
+		Set<Question> candidates = new HashSet<Question>(contentRatings.keySet());
+		for (Tag tag : tags)
+			candidates.addAll(tag.getQuestions());
+		candidates.remove(q); // don't find the question itself!
+		return Mapper.sort(candidates, new SearchFilter(contentRatings, tags));
+	}
+
+	public List<Question> findDuplicates(Question q) {
+		final Map<Question, Double> similar = SearchIndex.get().similarTo(q.id(),
+				DUPLICATE_SIMILARITY, questions);
+		return Mapper.sort(similar.keySet(), new Filter<Question, Double>() {
+			public Double visit(Question other) {
+				return -similar.get(other);
+			}
+		});
 	}
 
 	public void clear() {
 		questions.clear();
+		SearchIndex.get().clear();
+	}
+
+	public Map<Tag, Integer> countTags(Collection<Question> questions) {
+		// count by ids alone instead of looking at every hit's tags
+		BitSet ids = new BitSet();
+		for (Question question : questions)
+			ids.set(question.id());
+		int size = ids.cardinality();
+
+		final HashMap<Tag, Integer> counts = new HashMap<Tag, Integer>();
+		for (Tag tag : new ArrayList<Tag>(Database.get().tags().all())) {
+			int count = tag.countIn(ids, size);
+			if (count > 0)
+				counts.put(tag, count);
+		}
+		List<Tag> tags = new ArrayList<Tag>(counts.keySet());
+		Collections.sort(tags, new Comparator<Tag>() {
+			public int compare(Tag a, Tag b) {
+				int diff = counts.get(b) - counts.get(a);
+				return diff != 0 ? diff : a.compareTo(b);
+			}
+		});
+		LinkedHashMap<Tag, Integer> sorted = new LinkedHashMap<Tag, Integer>();
+		for (Tag tag : tags)
+			sorted.put(tag, counts.get(tag));
+		return sorted;
 	}
 }
@@ -1,33 +1,63 @@
 package models.database.HotDatabase;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.HashSet;
 import java.util.Set;
 
 import models.Item;
+import models.Leaderboard;
 import models.User;
 import models.database.IUserDatabase;
 
 public class HotUserDatabase implements IUserDatabase {
-	private static HashMap<String, User> users = new HashMap();
+	/**
+	 * The users by name. As the names are compared ignoring case, there's no
+	 * need for normalizing them on every lookup and users whose names only
+	 * differ in case can't both sign up.
+	 */
+	private static ConcurrentSkipListMap<String, User> users = new ConcurrentSkipListMap<String, User>(
+			String.CASE_INSENSITIVE_ORDER);
 
 	public boolean needSignUp(String username) {
-		return (users.get(username) == null);
+		return username == null || !users.containsKey(username);
 	}
 	
 	public User register(String username, String password) {
+		if (username == null || users.containsKey(username))
+			return null;
 		User user = new User(username, password);
-		users.put(username, user);
+		// someone else might have taken the name in the meantime
+		if (users.putIfAbsent(username, user) != null)
+			return null;
+		Leaderboard.get().add(user);
 		return user;
 	}
 	
 	public User get(String name) {
-		return users.get(name);
+		return name == null ? null : users.get(name);
 	}
 
 	public void remove(String name) {
-		users.remove(name);
+		User user = users.remove(name);
+		if (user != null)
+			Leaderboard.get().remove(user);
+	}
+
+	public List<User> findByPrefix(String prefix, int max) {
+		List<User> found = new ArrayList<User>();
+		// names with a common prefix are stored next to each other
+		for (Map.Entry<String, User> entry : users.tailMap(prefix).entrySet()) {
+			if (found.size() >= max
+					|| !entry.getKey().regionMatches(true, 0, prefix, 0,
+							prefix.length()))
+				break;
+			found.add(entry.getValue());
+		}
+		return found;
 	}
 
 	public Collection<User> all() {
@@ -40,5 +70,6 @@ public class HotUserDatabase implements IUserDatabase {
 
 	public void clear() {
 		users.clear();
+		Leaderboard.get().clear();
 	}
 }
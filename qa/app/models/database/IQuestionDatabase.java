@@ -3,10 +3,12 @@ package models.database;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import models.Answer;
 import models.Question;
+import models.Tag;
 import models.User;
 
 /**
@@ -41,6 +43,16 @@ public interface IQuestionDatabase {
 	 */
 	public List<Question> searchFor(String term);
 
+	/**
+	 * Suggest a correction for a misspelled search term ("did you mean").
+	 * 
+	 * @param term
+	 *            words to be searched
+	 * @return the term with all misspelled words corrected or null if there
+	 *         is nothing to correct.
+	 */
+	public String suggestFor(String term);
+
 	/**
 	 * Deletes the Question without cleaning up.
 	 * 
@@ -77,7 +89,36 @@ public interface IQuestionDatabase {
 
 	public int countAllAnswers();
 	
+	/**
+	 * Get all questions sharing tags with or having content similar to a
+	 * question.
+	 * 
+	 * @param q
+	 *            the question to find similar ones for
+	 * @return the similar questions, most similar one first
+	 */
 	public List<Question> findSimilar(Question q);
 
+	/**
+	 * Get all questions whose content is nearly the same as the one of a
+	 * question.
+	 * 
+	 * @param q
+	 *            the question to find possible duplicates of
+	 * @return the possible duplicates, most similar one first
+	 */
+	public List<Question> findDuplicates(Question q);
+
+	/**
+	 * Counts how many of the given questions are associated with each tag
+	 * (e.g. for narrowing down search results).
+	 * 
+	 * @param questions
+	 *            the questions to count the tags of
+	 * @return the number of questions by tag (leaving out tags without any
+	 *         questions), most frequent tag first
+	 */
+	public Map<Tag, Integer> countTags(Collection<Question> questions);
+
 	public void clear();
 }
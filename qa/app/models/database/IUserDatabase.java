@@ -2,6 +2,7 @@ package models.database;
 
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import models.Item;
@@ -10,7 +11,7 @@ import models.User;
 public interface IUserDatabase {
 	
 	/**
-	 * Get the <code>User</code> with the given name.
+	 * Get the <code>User</code> with the given name (ignoring case).
 	 * 
 	 * @param name
 	 * @return a <code>User</code> or null if the given name doesn't exist.
@@ -21,7 +22,8 @@ public interface IUserDatabase {
 	 * Creates a <code>User</code> with the given credentials.
 	 * @param username
 	 * @param password
-	 * @return
+	 * @return the new <code>User</code> or null if the name is already taken
+	 *         (ignoring case).
 	 */
 	public User register(String username, String password);
 	
@@ -35,6 +37,15 @@ public interface IUserDatabase {
 
 	public void remove(String name);
 
+	/**
+	 * Find the users whose names start with a given prefix (ignoring case).
+	 * 
+	 * @param prefix the beginning of the names
+	 * @param max the maximal number of users to return
+	 * @return the matching users, ordered by name
+	 */
+	public List<User> findByPrefix(String prefix, int max);
+
 	public Collection<User> all();
 	
 	public int count();
@@ -0,0 +1,101 @@
+package models.helpers;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * A set which keeps its elements in insertion order, e.g. a user's entries
+ * ordered by creation time. Unlike a {@link java.util.LinkedHashSet}, it can
+ * also return the most recently added elements without walking all of
+ * them, while adding and removing elements still take logarithmic time.
+ *
+ * This set isn't thread-safe.
+ *
+ * @param <T>
+ *            the element type
+ */
+public class OrderedSet<T> extends AbstractSet<T> {
+
+	/** The position at which each element has been added. */
+	private final HashMap<T, Long> positions = new HashMap<T, Long>();
+	private final TreeMap<Long, T> elements = new TreeMap<Long, T>();
+	private long next;
+
+	@Override
+	public boolean add(T element) {
+		if (this.positions.containsKey(element))
+			return false;
+		this.positions.put(element, this.next);
+		this.elements.put(this.next++, element);
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object element) {
+		Long position = this.positions.remove(element);
+		if (position == null)
+			return false;
+		this.elements.remove(position);
+		return true;
+	}
+
+	@Override
+	public boolean contains(Object element) {
+		return this.positions.containsKey(element);
+	}
+
+	@Override
+	public int size() {
+		return this.positions.size();
+	}
+
+	@Override
+	public void clear() {
+		this.positions.clear();
+		this.elements.clear();
+	}
+
+	/**
+	 * Iterates over the elements, the oldest one first.
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		final Iterator<T> it = this.elements.values().iterator();
+		return new Iterator<T>() {
+			private T current;
+
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			public T next() {
+				return this.current = it.next();
+			}
+
+			public void remove() {
+				it.remove();
+				OrderedSet.this.positions.remove(this.current);
+			}
+		};
+	}
+
+	/**
+	 * @param max
+	 *            the maximal number of elements to return
+	 * @return a copy of the (at most) <code>max</code> most recently added
+	 *         elements, the last one first
+	 */
+	public List<T> newest(int max) {
+		List<T> newest = new ArrayList<T>(Math.min(max, this.size()));
+		for (T element : this.elements.descendingMap().values()) {
+			if (newest.size() >= max)
+				break;
+			newest.add(element);
+		}
+		return newest;
+	}
+}
@@ -0,0 +1,97 @@
+package models.helpers;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Counts events within a sliding time window (e.g. the posts of the last
+ * hour) without having to remember every single one of them.
+ *
+ * The window is split up into a fixed number of buckets, each counting the
+ * events of one time slice. The buckets are reused round-robin, so that
+ * recording an event as well as counting the events of the window take
+ * constant time and memory, at the price of the window's start only being
+ * exact up to a bucket's length.
+ */
+public class SlidingWindowCounter {
+
+	private final long bucketLength;
+	/** The number of the time slice each bucket is currently counting. */
+	private final long[] slices;
+	private final int[] counts;
+
+	/**
+	 * Creates a counter for a window of <code>buckets * bucketLength</code>
+	 * milliseconds.
+	 *
+	 * @param buckets
+	 *            the number of buckets to split the window into
+	 * @param bucketLength
+	 *            the length of a single bucket in milliseconds
+	 */
+	public SlidingWindowCounter(int buckets, long bucketLength) {
+		if (buckets <= 0 || bucketLength <= 0)
+			throw new IllegalArgumentException();
+		this.bucketLength = bucketLength;
+		this.slices = new long[buckets];
+		this.counts = new int[buckets];
+		Arrays.fill(this.slices, Long.MIN_VALUE);
+	}
+
+	/**
+	 * Records an event.
+	 *
+	 * @param when
+	 *            the time of the event
+	 */
+	public synchronized void add(Date when) {
+		long slice = this.sliceOf(when);
+		int bucket = this.bucketOf(slice);
+		if (this.slices[bucket] != slice) {
+			// events older than a bucket's current slice are out of the window
+			if (this.slices[bucket] > slice)
+				return;
+			this.slices[bucket] = slice;
+			this.counts[bucket] = 0;
+		}
+		this.counts[bucket]++;
+	}
+
+	/**
+	 * Forgets about an event recorded before (e.g. a deleted post).
+	 *
+	 * @param when
+	 *            the time of the event
+	 */
+	public synchronized void remove(Date when) {
+		long slice = this.sliceOf(when);
+		int bucket = this.bucketOf(slice);
+		if (this.slices[bucket] == slice && this.counts[bucket] > 0)
+			this.counts[bucket]--;
+	}
+
+	/**
+	 * Counts the events within the window ending at a given time.
+	 *
+	 * @param now
+	 *            the end of the window
+	 * @return the number of events since <code>now</code> minus the window's
+	 *         length
+	 */
+	public synchronized int count(Date now) {
+		long oldest = this.sliceOf(now) - this.slices.length;
+		int count = 0;
+		for (int i = 0; i < this.slices.length; i++)
+			if (this.slices[i] > oldest)
+				count += this.counts[i];
+		return count;
+	}
+
+	private long sliceOf(Date when) {
+		return when.getTime() / this.bucketLength;
+	}
+
+	private int bucketOf(long slice) {
+		return (int) (((slice % this.slices.length) + this.slices.length) % this.slices.length);
+	}
+}
@@ -0,0 +1,74 @@
+package models.helpers;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the rate of events (e.g. a user's posts) while allowing short
+ * bursts: the bucket holds up to <code>capacity</code> tokens, each event
+ * takes one of them and tokens are refilled at a constant rate.
+ *
+ * Instead of the number of tokens, the bucket only remembers the time at
+ * which it will be full again (which is equivalent). That time fits into a
+ * single number, so taking a token is a lock-free compare-and-set.
+ */
+public class TokenBucket {
+
+	private final long capacity;
+	/** The time it takes to refill a single token in microseconds. */
+	private final long interval;
+	/** The time the bucket will be full again in microseconds. */
+	private final AtomicLong fullAt = new AtomicLong(Long.MIN_VALUE);
+
+	/**
+	 * Creates a full bucket.
+	 *
+	 * @param capacity
+	 *            the maximal number of tokens (i.e. the largest burst)
+	 * @param perMinute
+	 *            the number of tokens refilled per minute
+	 */
+	public TokenBucket(int capacity, int perMinute) {
+		if (capacity <= 0 || perMinute <= 0)
+			throw new IllegalArgumentException();
+		this.capacity = capacity;
+		this.interval = 60L * 1000 * 1000 / perMinute;
+	}
+
+	/**
+	 * Tries to take a token.
+	 *
+	 * @param now
+	 *            the current time in milliseconds
+	 * @return 0 if a token has been taken, otherwise the number of
+	 *         milliseconds until the next one will be available
+	 */
+	public long take(long now) {
+		long time = now * 1000;
+		while (true) {
+			long fullAt = this.fullAt.get();
+			long next = Math.max(fullAt, time) + this.interval;
+			long overdraft = next - time - this.capacity * this.interval;
+			if (overdraft > 0)
+				return (overdraft + 999) / 1000;
+			if (this.fullAt.compareAndSet(fullAt, next))
+				return 0;
+		}
+	}
+
+	/**
+	 * Puts back a token that has been taken but not used after all.
+	 */
+	public void refund() {
+		this.fullAt.addAndGet(-this.interval);
+	}
+
+	/**
+	 * @param now
+	 *            the current time in milliseconds
+	 * @return whether the bucket is full, i.e. it's no different from a new
+	 *         one and can be forgotten
+	 */
+	public boolean isFull(long now) {
+		return this.fullAt.get() <= now * 1000;
+	}
+}
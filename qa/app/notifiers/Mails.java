@@ -0,0 +1,28 @@
+package notifiers;
+
+import java.util.List;
+
+import models.Notification;
+import models.User;
+import play.Play;
+import play.mvc.Mailer;
+
+public class Mails extends Mailer {
+
+	/**
+	 * Sends a user a summary of his unread notifications.
+	 * 
+	 * @param user
+	 *            the user to send the mail to
+	 * @param notifications
+	 *            the notifications to sum up, most recent one first
+	 */
+	public static void digest(User user, List<Notification> notifications) {
+		setFrom(Play.configuration.getProperty("mail.from",
+				"ajopi <noreply@ajopi.ch>"));
+		addRecipient(user.getEmail());
+		setSubject("ajopi: %d new notification%s", notifications.size(),
+				notifications.size() == 1 ? "" : "s");
+		send(user, notifications);
+	}
+}
@@ -32,10 +32,38 @@ var TagAutocompletion = {
 	}
 };
 
+/**
+ * Keeps the number of unread notifications up to date by repeatedly asking
+ * an element's streamJSON for notifications newer than the last one known.
+ */
+var NotificationStream = {
+	poll: function(element) {
+		$.ajax({
+			url: element.attr("streamJSON"),
+			data: { cursor: element.attr("cursor") },
+			dataType: "json",
+			success: function(news) {
+				element.attr("cursor", news.cursor);
+				element.text(news.unread > 0 ? "(" + news.unread + ")" : "");
+				NotificationStream.poll(element);
+			},
+			error: function() {
+				// try again later, e.g. after a restart
+				setTimeout(function() { NotificationStream.poll(element); }, 30000);
+			}
+		});
+	}
+};
+
 $(document).ready(function() {
 	// autocompletify all elements marked as such
 	$("input[type=text][tagsJSON]").autocomplete(TagAutocompletion);
 	
+	// keep the notification count up to date
+	$("#notificationCount[streamJSON]").each(function() {
+		NotificationStream.poll($(this));
+	});
+	
 	// make an "Edit Tags" button replace the static Tag list with
 	// a dynamic one - or submit the form, if it's already done that 
 	$(".tags .editTags").click(function() {
@@ -0,0 +1,107 @@
+package tests;
+
+import models.Credentials;
+import models.Pbkdf2Credentials;
+import models.User;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class CredentialsTest extends UnitTest {
+
+	private Credentials configured;
+
+	@Before
+	public void setUp() {
+		this.configured = Credentials.get();
+	}
+
+	@After
+	public void tearDown() {
+		Credentials.swapWith(this.configured);
+	}
+
+	@Test
+	public void shouldVerifyLegacyHashes() {
+		Credentials credentials = new Credentials();
+		Credentials.swapWith(credentials);
+		String stored = User.encrypt("bill");
+		assertTrue(credentials.verify("bill", stored));
+		assertFalse(credentials.verify("Bill", stored));
+		assertFalse(credentials.verify("bill", "not a hash"));
+		assertFalse(credentials.verify("bill", stored + "00"));
+
+		// hex strings have always been stored without leading zeroes
+		String password = null;
+		for (int i = 0; password == null; i++)
+			if (User.encrypt("pw" + i).length() < 40)
+				password = "pw" + i;
+		User user = new User("Zero", password);
+		assertTrue(user.checkPW(password));
+		assertFalse(user.checkPW(password + "x"));
+	}
+
+	@Test
+	public void shouldUpgradeLegacyHashes() {
+		User user = new User("Legacy", "legacy");
+		String legacy = user.getPasswordHash();
+		assertEquals(User.encrypt("legacy"), legacy);
+
+		Credentials.swapWith(new Pbkdf2Credentials(100));
+		assertFalse(user.checkPW("wrong"));
+		assertEquals(legacy, user.getPasswordHash());
+		assertTrue(user.checkPW("legacy"));
+		String upgraded = user.getPasswordHash();
+		assertTrue(upgraded.startsWith("pbkdf2$100$"));
+		assertTrue(user.checkPW("legacy"));
+		assertEquals(upgraded, user.getPasswordHash());
+		assertFalse(user.checkPW("Legacy"));
+
+		// more iterations upgrade again, going back to SHA-1 doesn't
+		Credentials.swapWith(new Pbkdf2Credentials(200));
+		assertTrue(user.checkPW("legacy"));
+		assertTrue(user.getPasswordHash().startsWith("pbkdf2$200$"));
+		Credentials.swapWith(new Credentials());
+		assertTrue(user.checkPW("legacy"));
+		assertFalse(user.checkPW("wrong"));
+		assertTrue(user.getPasswordHash().startsWith("pbkdf2$200$"));
+	}
+
+	@Test
+	public void shouldSaltHashes() {
+		Credentials credentials = new Pbkdf2Credentials(100);
+		String first = credentials.hash("secret");
+		String second = credentials.hash("secret");
+		assertFalse(first.equals(second));
+		assertTrue(credentials.verify("secret", first));
+		assertTrue(credentials.verify("secret", second));
+		assertFalse(credentials.verify("secret", first.replace("$100$",
+				"$101$")));
+		assertFalse(credentials.verify("secret", "pbkdf2$100$broken"));
+	}
+
+	@Test
+	public void shouldCompareWholeDigests() {
+		// digests are compared as raw bytes (in constant time), so a single
+		// differing digit anywhere must fail
+		Credentials[] all = { new Credentials(), new Pbkdf2Credentials(100) };
+		for (Credentials credentials : all) {
+			String stored = credentials.hash("secret");
+			assertTrue(credentials.verify("secret", stored));
+			assertFalse(credentials.verify("secret", flipLast(stored)));
+			assertFalse(credentials.verify("secret", stored.substring(0,
+					stored.length() - 2)
+					+ "0" + stored.substring(stored.length() - 2)));
+			assertFalse(credentials.verify("secret", stored + "0"));
+			assertFalse(credentials.verify("secret", ""));
+		}
+	}
+
+	private static String flipLast(String hash) {
+		char last = hash.charAt(hash.length() - 1);
+		return hash.substring(0, hash.length() - 1) + (last == '0' ? '1' : '0');
+	}
+}
@@ -0,0 +1,72 @@
+package tests;
+
+import jobs.DeleteUserJob;
+import models.Question;
+import models.User;
+import models.database.Database;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class DeleteUserJobTest extends UnitTest {
+
+	private User heavy;
+	private User other;
+
+	@Before
+	public void setUp() {
+		Database.clear();
+		this.heavy = Database.get().users().register("Heavy", "heavy");
+		this.other = Database.get().users().register("Other", "other");
+		for (int i = 0; i < 250; i++) {
+			Question question = Database.get().questions().add(this.heavy,
+					"Question " + i);
+			question.answer(this.heavy, "My own answer " + i);
+			question.answer(this.other, "Answer " + i);
+			Database.get().questions().add(this.other, "Other question " + i)
+					.voteUp(this.heavy);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		Database.clear();
+	}
+
+	@Test
+	public void shouldDeleteUserInBatches() throws Exception {
+		DeleteUserJob job = DeleteUserJob.prepare(this.heavy, false);
+		assertNull(Database.get().users().get("Heavy"));
+		assertTrue(job.isRunning());
+		assertSame(job, DeleteUserJob.get(this.heavy.getID()));
+		job.doJob();
+		assertFalse(job.isRunning());
+		assertEquals(750, job.getTotal());
+		assertEquals(750, job.getProcessed());
+		assertEquals(100, job.getProgress());
+		assertSame(job, DeleteUserJob.get(this.heavy.getID()));
+
+		assertEquals(0, this.heavy.countQuestions());
+		assertEquals(0, this.heavy.countAnswers());
+		assertEquals(0, this.heavy.countVotes());
+		assertEquals(250, Database.get().questions().count());
+		assertEquals(0, this.other.countAnswers());
+		assertEquals(0, this.other.getReputation());
+	}
+
+	@Test
+	public void shouldAnonymizeUserInBatches() throws Exception {
+		DeleteUserJob job = DeleteUserJob.prepare(this.heavy, true);
+		job.doJob();
+		assertFalse(job.isRunning());
+		assertEquals(750, job.getProcessed());
+		assertEquals(500, Database.get().questions().count());
+		assertEquals(250, this.other.countAnswers());
+		for (Question question : Database.get().questions().all())
+			assertNotSame(this.heavy, question.owner());
+		assertEquals(0, this.heavy.countVotes());
+	}
+}
@@ -0,0 +1,106 @@
+package tests;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+
+import models.Answer;
+import models.Leaderboard;
+import models.Question;
+import models.User;
+import models.database.Database;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class LeaderboardTest extends UnitTest {
+
+	private User asker;
+	private User answerer;
+	private User voter;
+
+	@Before
+	public void setUp() {
+		Database.clear();
+		this.asker = Database.get().users().register("Asker", "asker");
+		this.answerer = Database.get().users().register("Answerer",
+				"answerer");
+		this.voter = Database.get().users().register("Voter", "voter");
+	}
+
+	@After
+	public void tearDown() {
+		Database.clear();
+	}
+
+	@Test
+	public void shouldEarnReputation() {
+		Question question = Database.get().questions().add(this.asker,
+				"Why?");
+		Answer answer = question.answer(this.answerer, "Because.");
+		question.voteUp(this.voter);
+		answer.voteUp(this.voter);
+		assertEquals(User.REPUTATION_QUESTION_UPVOTE, this.asker
+				.getReputation());
+		assertEquals(User.REPUTATION_ANSWER_UPVOTE, this.answerer
+				.getReputation());
+
+		// changing a vote retracts the old one
+		answer.voteDown(this.voter);
+		assertEquals(User.REPUTATION_DOWNVOTE, this.answerer.getReputation());
+
+		question.setBestAnswer(answer, Calendar.getInstance());
+		assertEquals(User.REPUTATION_DOWNVOTE + User.REPUTATION_BEST_ANSWER,
+				this.answerer.getReputation());
+
+		answer.unregister();
+		assertEquals(0, this.answerer.getReputation());
+		assertFalse(question.hasBestAnswer());
+	}
+
+	@Test
+	public void shouldRankUsers() {
+		assertEquals(3, Leaderboard.get().size());
+		Question question = Database.get().questions().add(this.asker,
+				"Why?");
+		Answer answer = question.answer(this.answerer, "Because.");
+		question.voteUp(this.voter);
+		answer.voteUp(this.voter);
+
+		assertEquals(1, this.answerer.getRank());
+		assertEquals(2, this.asker.getRank());
+		assertEquals(3, this.voter.getRank());
+		List<User> page = Leaderboard.get().page(1, 5);
+		assertEquals(2, page.size());
+		assertEquals(this.asker, page.get(0));
+		assertEquals(this.voter, page.get(1));
+
+		this.answerer.delete();
+		assertEquals(2, Leaderboard.get().size());
+		assertEquals(0, this.answerer.getRank());
+		assertEquals(1, this.asker.getRank());
+	}
+
+	@Test
+	public void shouldStayOrderedUnderManyUpdates() {
+		Leaderboard leaderboard = new Leaderboard();
+		HashMap<User, Integer> reputations = new HashMap<User, Integer>();
+		for (int i = 0; i < 200; i++) {
+			User user = new User("User" + i, "user" + i);
+			leaderboard.add(user);
+			reputations.put(user, (i * 37) % 101);
+			leaderboard.update(user, reputations.get(user));
+		}
+		List<User> all = leaderboard.page(0, 200);
+		assertEquals(200, all.size());
+		for (int i = 0; i < all.size(); i++) {
+			assertEquals(i + 1, leaderboard.rankOf(all.get(i)));
+			if (i > 0)
+				assertTrue(reputations.get(all.get(i - 1)) >= reputations
+						.get(all.get(i)));
+		}
+	}
+}
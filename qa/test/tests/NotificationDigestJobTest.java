@@ -0,0 +1,78 @@
+package tests;
+
+import jobs.NotificationDigestJob;
+import models.Question;
+import models.User;
+import models.database.Database;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.libs.Mail;
+import play.test.UnitTest;
+
+public class NotificationDigestJobTest extends UnitTest {
+
+	private User norbert;
+	private User andrew;
+
+	@Before
+	public void setUp() {
+		Database.get().users().clear();
+		this.norbert = Database.get().users().register("Norbert", "norbert");
+		this.norbert.setEmail("norbert@example.com");
+		this.andrew = Database.get().users().register("Andrew", "andrew");
+		this.andrew.setEmail("andrew@example.com");
+	}
+
+	@After
+	public void tearDown() {
+		Database.get().users().clear();
+	}
+
+	private Question watchedQuestion(String content) {
+		Question question = new Question(this.andrew, content);
+		this.norbert.startObserving(question);
+		return question;
+	}
+
+	@Test
+	public void shouldSendOneDigestPerUser() throws Exception {
+		Question question = watchedQuestion("Who watches the watchmen?");
+		for (int i = 0; i < 5; i++)
+			question.answer(this.andrew, "Answer " + i);
+		watchedQuestion("Who's there?").answer(this.andrew, "Me");
+
+		NotificationDigestJob job = new NotificationDigestJob();
+		job.doJob();
+		assertEquals(1, job.getSent());
+		String mail = Mail.Mock.getLastMessageReceivedBy("norbert@example.com");
+		assertNotNull(mail);
+		assertTrue(mail.contains("2 new notifications"));
+		assertNull(Mail.Mock.getLastMessageReceivedBy("andrew@example.com"));
+	}
+
+	@Test
+	public void shouldNotSendNotificationsTwice() throws Exception {
+		Question question = watchedQuestion("Who watches the watchmen?");
+		question.answer(this.andrew, "Nobody");
+		NotificationDigestJob job = new NotificationDigestJob();
+		job.doJob();
+		assertEquals(1, job.getSent());
+		job.doJob();
+		assertEquals(0, job.getSent());
+
+		// coalescing makes the notification new again
+		question.answer(this.andrew, "Everybody");
+		job.doJob();
+		assertEquals(1, job.getSent());
+
+		// seen notifications aren't sent
+		this.norbert.getNotifications().get(0).unsetNew();
+		watchedQuestion("Who's there?").answer(this.andrew, "Me");
+		this.norbert.getNotifications().get(0).unsetNew();
+		job.doJob();
+		assertEquals(0, job.getSent());
+	}
+}
@@ -0,0 +1,83 @@
+package tests;
+
+import java.util.Date;
+
+import jobs.NotificationRetentionJob;
+import models.ISystemInformation;
+import models.Question;
+import models.SystemInformation;
+import models.User;
+import models.database.Database;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.test.UnitTest;
+import tests.mocks.SystemInformationMock;
+
+public class NotificationRetentionJobTest extends UnitTest {
+
+	private ISystemInformation savedSysInfo;
+	private SystemInformationMock sys;
+	private User norbert;
+	private User andrew;
+
+	@Before
+	public void setUp() {
+		this.savedSysInfo = SystemInformation.get();
+		this.sys = new SystemInformationMock();
+		SystemInformation.mockWith(this.sys);
+		this.sys.year(2010).month(11).day(1).hour(12).minute(0);
+		Database.get().users().clear();
+		this.norbert = Database.get().users().register("Norbert", "norbert");
+		this.andrew = Database.get().users().register("Andrew", "andrew");
+	}
+
+	@After
+	public void tearDown() {
+		SystemInformation.mockWith(this.savedSysInfo);
+		Database.get().users().clear();
+	}
+
+	private void notifyNorbert(int count) {
+		for (int i = 0; i < count; i++) {
+			Question question = new Question(this.andrew, "Question " + i);
+			this.norbert.startObserving(question);
+			question.answer(this.andrew, "Answer " + i);
+		}
+	}
+
+	@Test
+	public void shouldExpireOldNotifications() throws Exception {
+		notifyNorbert(3);
+		this.sys.day(20);
+		notifyNorbert(2);
+		assertEquals(5, this.norbert.getNotifications().size());
+
+		int expired = new NotificationRetentionJob().expire(
+				new Date(this.sys.day(10).now().getTime()), 100);
+		assertEquals(3, expired);
+		assertEquals(2, this.norbert.getNotifications().size());
+		assertEquals(2, this.norbert.countNewNotifications());
+	}
+
+	@Test
+	public void shouldKeepMostRecentNotifications() throws Exception {
+		notifyNorbert(10);
+		// spread across several batches
+		for (int i = 0; i < 2 * NotificationRetentionJob.BATCH_SIZE; i++)
+			Database.get().users().register("User" + i, "secret");
+
+		NotificationRetentionJob job = new NotificationRetentionJob();
+		assertEquals(6, job.expire(new Date(0), 4));
+		assertEquals(4, this.norbert.getNotifications().size());
+		assertEquals("Answer 9", this.norbert.getNotifications().get(0)
+				.getAbout().content());
+		assertEquals("Answer 6", this.norbert.getNotifications().get(3)
+				.getAbout().content());
+
+		job.doJob();
+		assertEquals(0, job.getReclaimed());
+	}
+}
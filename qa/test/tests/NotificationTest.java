@@ -1,11 +1,19 @@
 package tests;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
 
 import models.Answer;
+import models.IObservable;
+import models.IObserver;
 import models.ISystemInformation;
 import models.Notification;
+import models.NotificationDispatcher;
+import models.NotificationInbox;
 import models.Question;
+import models.QueuedNotificationDispatcher;
 import models.SystemInformation;
 import models.User;
 
@@ -45,6 +53,79 @@ public class NotificationTest extends UnitTest {
 		assertFalse(this.norbert.isObserving(this.question));
 	}
 
+	@Test
+	public void shouldListWatchedQuestions() {
+		assertEquals(0, this.norbert.countWatchedQuestions());
+		Question[] questions = new Question[5];
+		for (int i = 0; i < questions.length; i++)
+			questions[i] = this.watchedQuestion(i);
+		assertEquals(5, this.norbert.countWatchedQuestions());
+		assertEquals(questions[0], this.norbert.getWatchedQuestions().get(0));
+		List<Question> page = this.norbert.getWatchedQuestions(2, 2);
+		assertEquals(2, page.size());
+		assertEquals(questions[2], page.get(0));
+		assertEquals(questions[3], page.get(1));
+		assertEquals(1, this.norbert.getWatchedQuestions(4, 2).size());
+
+		this.norbert.stopObserving(questions[1]);
+		questions[2].unregister();
+		assertEquals(3, this.norbert.countWatchedQuestions());
+		assertFalse(this.norbert.getWatchedQuestions().contains(questions[2]));
+
+		this.norbert.delete();
+		assertFalse(questions[0].hasObserver(this.norbert));
+	}
+
+	@Test
+	public void shouldBeNotifiedInBackground() throws Exception {
+		QueuedNotificationDispatcher dispatcher = new QueuedNotificationDispatcher(
+				2);
+		NotificationDispatcher.swapWith(dispatcher);
+		try {
+			for (int i = 0; i < 10; i++)
+				this.watchedQuestion(i).answer(this.andrew, "Answer " + i);
+		} finally {
+			dispatcher.stop();
+			NotificationDispatcher.swapWith(new NotificationDispatcher());
+		}
+		assertEquals(0, dispatcher.pending());
+		assertEquals(10, this.norbert.getNotifications().size());
+		// most recent one first, in the order the answers were posted
+		for (int i = 0; i < 10; i++)
+			assertEquals("Answer " + (9 - i), this.norbert.getNotifications()
+					.get(i).getAbout().content());
+	}
+
+	@Test
+	public void shouldStopReplacedDispatchers() {
+		QueuedNotificationDispatcher dispatcher = new QueuedNotificationDispatcher(
+				16);
+		NotificationDispatcher.swapWith(dispatcher);
+		for (int i = 0; i < 10; i++)
+			this.watchedQuestion(i).answer(this.andrew, "Answer " + i);
+		NotificationDispatcher.swapWith(new NotificationDispatcher());
+		assertEquals(0, dispatcher.pending());
+		assertEquals(10, this.norbert.getNotifications().size());
+	}
+
+	@Test
+	public void shouldNotifyRemainingObserversIfOneFails() {
+		IObserver failing = new IObserver() {
+			public void observe(IObservable o, Object arg) {
+				throw new IllegalStateException("failing on purpose");
+			}
+		};
+		final int[] notified = { 0 };
+		IObserver counting = new IObserver() {
+			public void observe(IObservable o, Object arg) {
+				notified[0]++;
+			}
+		};
+		NotificationDispatcher.get().dispatch(this.question, null,
+				Arrays.asList(counting, failing, counting));
+		assertEquals(2, notified[0]);
+	}
+
 	@Test
 	public void shouldBeNotified() {
 		assertEquals(this.norbert.getNotifications().size(), 0);
@@ -93,9 +174,8 @@ public class NotificationTest extends UnitTest {
 
 	@Test
 	public void shouldHaveDifferentNotificationIDs() {
-		this.norbert.startObserving(this.question);
 		for (int i = 0; i < 10; i++)
-			this.question.answer(this.andrew, "Answer " + i);
+			this.watchedQuestion(i).answer(this.andrew, "Answer " + i);
 		assertEquals(this.norbert.getNotifications().size(), 10);
 
 		Notification first = Collections.max(this.norbert
@@ -154,4 +234,166 @@ public class NotificationTest extends UnitTest {
 		assertNull(this.norbert.getVeryRecentNewNotification().getAbout()
 				.owner());
 	}
+
+	@Test
+	public void shouldCountUnreadNotifications() {
+		for (int i = 0; i < 5; i++)
+			this.watchedQuestion(i).answer(this.andrew, "Answer " + i);
+		assertEquals(5, this.norbert.countNewNotifications());
+		this.norbert.getNotifications().get(0).unsetNew();
+		this.norbert.getNotifications().get(0).unsetNew();
+		assertEquals(4, this.norbert.countNewNotifications());
+		this.norbert.getNotifications().get(1).unregister();
+		assertEquals(3, this.norbert.countNewNotifications());
+		assertEquals(4, this.norbert.getNotifications().size());
+		assertEquals(2, this.norbert.getNotifications(2).size());
+		assertEquals("Answer 4", this.norbert.getNotifications(2).get(0)
+				.getAbout().content());
+	}
+
+	@Test
+	public void shouldDropOldestNotifications() {
+		Notification first = null;
+		for (int i = 0; i <= NotificationInbox.CAPACITY; i++) {
+			this.watchedQuestion(i).answer(this.andrew, "Answer " + i);
+			if (first == null)
+				first = this.norbert.getNotifications(1).get(0);
+		}
+		assertEquals(NotificationInbox.CAPACITY, this.norbert
+				.getNotifications().size());
+		assertEquals(NotificationInbox.CAPACITY, this.norbert
+				.countNewNotifications());
+		assertNull(this.norbert.getNotification(first.getID()));
+		Notification last = this.norbert.getNotifications(1).get(0);
+		assertEquals(last, this.norbert.getNotification(last.getID()));
+	}
+
+	@Test
+	public void shouldDropNotificationsOfDeletedAnswers() {
+		this.norbert.startObserving(this.question);
+		Question other = this.watchedQuestion(0);
+		Answer answer = this.question.answer(this.andrew, "soon to be gone");
+		other.answer(this.andrew, "here to stay");
+		assertEquals(2, this.norbert.countNewNotifications());
+		answer.unregister();
+		assertFalse(answer.isRegistered());
+		assertNull(answer.getQuestion());
+		assertEquals(1, this.norbert.countNewNotifications());
+		assertEquals(1, this.norbert.getNotifications().size());
+
+		other.unregister();
+		assertEquals(0, this.norbert.countNewNotifications());
+		assertEquals(0, this.norbert.getNotifications().size());
+	}
+
+	@Test
+	public void shouldCoalesceUnreadNotifications() {
+		this.norbert.startObserving(this.question);
+		Answer first = this.question.answer(this.andrew, "first");
+		Notification notification = this.norbert.getNotifications(1).get(0);
+		int id = notification.getID();
+		this.watchedQuestion(0).answer(this.andrew, "elsewhere");
+		Answer second = this.question.answer(this.andrew, "second");
+		Answer third = this.question.answer(this.andrew, "third");
+
+		assertEquals(2, this.norbert.getNotifications().size());
+		assertEquals(2, this.norbert.countNewNotifications());
+		// updated in place and moved to the top
+		assertSame(notification, this.norbert.getNotifications().get(0));
+		assertEquals(3, notification.getCount());
+		assertEquals(third, notification.getAbout());
+		// links to it keep working
+		assertEquals(id, notification.getID());
+		assertSame(notification, this.norbert.getNotification(id));
+
+		third.unregister();
+		assertEquals(2, notification.getCount());
+		assertEquals(second, notification.getAbout());
+		first.unregister();
+		assertEquals(1, notification.getCount());
+		assertEquals(second, notification.getAbout());
+		second.unregister();
+		assertEquals(1, this.norbert.getNotifications().size());
+
+		// seen notifications aren't updated anymore
+		this.question.answer(this.andrew, "fourth");
+		this.norbert.getNotifications().get(0).unsetNew();
+		this.question.answer(this.andrew, "fifth");
+		assertEquals(3, this.norbert.getNotifications().size());
+		assertEquals(1, this.norbert.getNotifications().get(0).getCount());
+	}
+
+	@Test
+	public void shouldOnlyPointToCoalescedAnswers() {
+		this.norbert.startObserving(this.question);
+		Answer first = this.question.answer(this.andrew, "first");
+		Answer second = this.question.answer(this.andrew, "second");
+		Notification seen = this.norbert.getNotifications(1).get(0);
+		seen.unsetNew();
+		Answer third = this.question.answer(this.andrew, "third");
+		Notification unread = this.norbert.getNotifications(1).get(0);
+		assertNotSame(seen, unread);
+
+		// the third answer is covered by the newer notification already
+		second.unregister();
+		assertEquals(1, seen.getCount());
+		assertSame(first, seen.getAbout());
+		assertSame(third, unread.getAbout());
+
+		first.unregister();
+		assertEquals(1, this.norbert.getNotifications().size());
+		assertSame(unread, this.norbert.getNotifications().get(0));
+	}
+
+	@Test
+	public void shouldGetNotificationsSinceCursor() {
+		this.norbert.startObserving(this.question);
+		assertTrue(this.norbert.getNotificationsSince(-1).isEmpty());
+		this.question.answer(this.andrew, "first");
+		this.watchedQuestion(0).answer(this.andrew, "elsewhere");
+		int cursor = this.norbert.getNotifications(1).get(0).getSequence();
+		assertEquals(2, this.norbert.getNotificationsSince(-1).size());
+		assertTrue(this.norbert.getNotificationsSince(cursor).isEmpty());
+
+		// a coalesced notification counts as news, too
+		this.question.answer(this.andrew, "second");
+		assertEquals(1, this.norbert.getNotificationsSince(cursor).size());
+		assertEquals(2, this.norbert.getNotificationsSince(cursor).get(0)
+				.getCount());
+	}
+
+	@Test
+	public void shouldNotGetAnythingSinceLargestCursor() {
+		this.norbert.startObserving(this.question);
+		this.question.answer(this.andrew, "first");
+		assertTrue(this.norbert.getNotificationsSince(Integer.MAX_VALUE)
+				.isEmpty());
+	}
+
+	@Test
+	public void shouldAwaitNotifications() throws Exception {
+		this.norbert.startObserving(this.question);
+		this.question.answer(this.andrew, "first");
+		int cursor = this.norbert.getNotifications(1).get(0).getSequence();
+		assertTrue(this.norbert.awaitNotificationsSince(cursor - 1, 1000)
+				.isDone());
+
+		Future<Boolean> waiting = this.norbert.awaitNotificationsSince(cursor,
+				60 * 1000);
+		assertFalse(waiting.isDone());
+		this.question.answer(this.andrew, "second");
+		assertTrue(waiting.isDone());
+		assertTrue(waiting.get());
+
+		cursor = this.norbert.getNotifications(1).get(0).getSequence();
+		Future<Boolean> idle = this.norbert.awaitNotificationsSince(cursor, 0);
+		assertTrue(idle.isDone());
+		assertFalse(idle.get());
+	}
+
+	private Question watchedQuestion(int i) {
+		Question question = new Question(this.andrew, "Question " + i);
+		this.norbert.startObserving(question);
+		return question;
+	}
 }
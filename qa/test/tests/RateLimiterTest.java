@@ -0,0 +1,125 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import models.ISystemInformation;
+import models.RateLimiter;
+import models.SystemInformation;
+import models.User;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.test.UnitTest;
+import tests.mocks.SystemInformationMock;
+
+public class RateLimiterTest extends UnitTest {
+
+	private ISystemInformation savedSysInfo;
+	private SystemInformationMock sys;
+	private RateLimiter limiter;
+	private User user;
+
+	@Before
+	public void setUp() {
+		this.savedSysInfo = SystemInformation.get();
+		this.sys = new SystemInformationMock();
+		SystemInformation.mockWith(this.sys);
+		this.sys.year(2010).month(12).day(1).hour(12).minute(0).second(0);
+		// a burst of 3 and one more every 10 seconds per user
+		this.limiter = new RateLimiter(3, 6, 5, 60);
+		this.user = new User("Writer", "writer");
+	}
+
+	@After
+	public void tearDown() {
+		SystemInformation.mockWith(this.savedSysInfo);
+	}
+
+	@Test
+	public void shouldAllowBurstsPerUser() {
+		for (int i = 0; i < 3; i++)
+			assertEquals(0, this.limiter.acquire(this.user, "10.0.0.1"));
+		assertEquals(10 * 1000, this.limiter.acquire(this.user, "10.0.0.1"));
+		// another user isn't affected
+		assertEquals(0, this.limiter.acquire(new User("Other", "other"),
+				"10.0.0.1"));
+
+		this.sys.second(5);
+		assertEquals(5 * 1000, this.limiter.acquire(this.user, "10.0.0.2"));
+		this.sys.second(10);
+		assertEquals(0, this.limiter.acquire(this.user, "10.0.0.2"));
+		assertTrue(this.limiter.acquire(this.user, "10.0.0.2") > 0);
+	}
+
+	@Test
+	public void shouldLimitAddressesIndependently() {
+		for (int i = 0; i < 5; i++)
+			assertEquals(0, this.limiter.acquire(new User("Sock" + i, "sock"),
+					"10.0.0.1"));
+		assertTrue(this.limiter.acquire(new User("Sock", "sock"), "10.0.0.1") > 0);
+		assertEquals(0, this.limiter.acquire(this.user, "10.0.0.2"));
+		assertEquals(0, this.limiter.acquire(null, "10.0.0.3"));
+		assertEquals(0, this.limiter.acquire(null, null));
+	}
+
+	@Test
+	public void shouldNotLetThrottledUsersDrainAddresses() {
+		for (int i = 0; i < 3; i++)
+			assertEquals(0, this.limiter.acquire(this.user, "10.0.0.1"));
+		for (int i = 0; i < 10; i++)
+			assertTrue(this.limiter.acquire(this.user, "10.0.0.1") > 0);
+		// the address still has 2 of its 5 tokens left
+		User other = new User("Other", "other");
+		assertEquals(0, this.limiter.acquire(other, "10.0.0.1"));
+		assertEquals(0, this.limiter.acquire(other, "10.0.0.1"));
+		assertTrue(this.limiter.acquire(other, "10.0.0.1") > 0);
+		// and a user refused by the address keeps his own token
+		User third = new User("Third", "third");
+		assertTrue(this.limiter.acquire(third, "10.0.0.1") > 0);
+		for (int i = 0; i < 3; i++)
+			assertEquals(0, this.limiter.acquire(third, "10.0.0.2"));
+	}
+
+	@Test
+	public void shouldForgetIdleClients() {
+		assertEquals(0, this.limiter.acquire(this.user, "10.0.0.1"));
+		assertEquals(2, this.limiter.size());
+		assertEquals(0, this.limiter.expire());
+
+		// the IP address' token is back after a second, the user's after 10
+		this.sys.second(5);
+		assertEquals(1, this.limiter.expire());
+		this.sys.second(10);
+		assertEquals(1, this.limiter.expire());
+		assertEquals(0, this.limiter.size());
+	}
+
+	@Test
+	public void shouldNotHandOutTooManyTokensConcurrently() throws Exception {
+		final RateLimiter limiter = new RateLimiter(1000, 1, 1000000, 1);
+		// the mock's calendar computes the time lazily, which isn't
+		// thread-safe
+		this.sys.now();
+		final AtomicInteger granted = new AtomicInteger();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 8; i++)
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 500; j++)
+						if (limiter.acquire(RateLimiterTest.this.user,
+								"10.0.0.1") == 0)
+							granted.incrementAndGet();
+				}
+			});
+		for (Thread thread : threads)
+			thread.start();
+		for (Thread thread : threads)
+			thread.join();
+		assertEquals(1000, granted.get());
+	}
+}
@@ -0,0 +1,66 @@
+package tests;
+
+import jobs.ReindexJob;
+import models.Question;
+import models.User;
+import models.SearchEngine.SearchIndex;
+import models.database.Database;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class ReindexJobTest extends UnitTest {
+
+	private User jack;
+	private Question chicken;
+
+	@Before
+	public void setUp() {
+		Database.get().questions().clear();
+		this.jack = new User("Jack", "jack");
+		this.chicken = new Question(this.jack,
+				"Why did the chicken cross the road?");
+		// enough questions to be split across several tasks
+		for (int i = 0; i < 1000; i++)
+			new Question(this.jack, "Question number " + i);
+	}
+
+	@After
+	public void tearDown() {
+		Database.get().questions().clear();
+	}
+
+	@Test
+	public void shouldRebuildIndex() throws Exception {
+		SearchIndex.swapWith(new SearchIndex());
+		assertTrue(Database.get().questions().searchFor("chicken").isEmpty());
+
+		ReindexJob job = new ReindexJob();
+		job.doJob();
+		assertFalse(job.isRunning());
+		assertEquals(1001, job.getIndexed());
+		assertEquals(100, job.getProgress());
+		assertTrue(job.getThroughput() > 0);
+		assertTrue(Database.get().questions().searchFor("chicken").contains(
+				this.chicken));
+		assertEquals(1000, Database.get().questions().searchFor("Question")
+				.size());
+	}
+
+	@Test
+	public void shouldForwardToRebuiltIndex() throws Exception {
+		SearchIndex old = SearchIndex.get();
+		new ReindexJob().doJob();
+		assertNotSame(old, SearchIndex.get());
+
+		// e.g. a question registered while the rebuild was swapped in
+		Question duck = new Question(this.jack, "What about the duck?");
+		old.add(duck.id(), duck.content());
+		assertTrue(Database.get().questions().searchFor("duck").contains(duck));
+		old.remove(this.chicken.id());
+		assertTrue(Database.get().questions().searchFor("chicken").isEmpty());
+	}
+}
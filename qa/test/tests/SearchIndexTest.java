@@ -0,0 +1,196 @@
+package tests;
+
+import java.io.File;
+import java.util.Map;
+
+import models.IDTable;
+import models.Question;
+import models.User;
+import models.SearchEngine.IndexSegment;
+import models.SearchEngine.SearchIndex;
+import models.SearchEngine.Tokenizer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class SearchIndexTest extends UnitTest {
+
+	private File directory;
+	private SearchIndex saved;
+	private SearchIndex index;
+	private IDTable<Question> questions;
+	private Question chicken;
+	private Question road;
+
+	@Before
+	public void setUp() {
+		this.directory = new File(System.getProperty("java.io.tmpdir"),
+				"searchindex-" + System.nanoTime());
+		// replacing an index swaps in the new one
+		this.saved = SearchIndex.get();
+		this.index = new SearchIndex();
+		User jack = new User("Jack", "jack");
+		this.chicken = new Question(jack, "Why did the chicken cross the road?");
+		this.road = new Question(jack, "Which road leads to Rome?");
+		this.questions = new IDTable<Question>();
+		this.questions.put(this.chicken.id(), this.chicken);
+		this.questions.put(this.road.id(), this.road);
+	}
+
+	@After
+	public void tearDown() {
+		SearchIndex.swapWith(this.saved);
+		this.index.clear();
+		this.directory.delete();
+	}
+
+	private Map<Question, Double> search(SearchIndex index, String query) {
+		return index.search(Tokenizer.words(query), this.questions);
+	}
+
+	@Test
+	public void shouldFindInMemory() {
+		this.index.add(this.chicken.id(), this.chicken.content());
+		this.index.add(this.road.id(), this.road.content());
+		assertEquals(2, search(this.index, "road").size());
+		assertEquals(1, search(this.index, "chicken").size());
+		assertTrue(search(this.index, "Rome").containsKey(this.road));
+		assertTrue(search(this.index, "duck").isEmpty());
+	}
+
+	@Test
+	public void shouldRateByNorm() {
+		this.index.add(this.chicken.id(), this.chicken.content());
+		// "Why did chicken cross road"
+		assertEquals(0.2, search(this.index, "chicken").get(this.chicken),
+				0.0001);
+		assertEquals(0.4, search(this.index, "chicken road").get(this.chicken),
+				0.0001);
+	}
+
+	@Test
+	public void shouldFlushAndReopenSegments() throws Exception {
+		this.index.open(this.directory);
+		this.index.add(this.chicken.id(), this.chicken.content());
+		this.index.add(this.road.id(), this.road.content());
+		assertEquals(2, this.index.flush());
+		assertEquals(1, this.index.segments().size());
+		assertEquals(2, search(this.index, "road").size());
+
+		SearchIndex reopened = new SearchIndex();
+		reopened.open(this.directory);
+		assertEquals(1, reopened.segments().size());
+		assertEquals(2, search(reopened, "road").size());
+		assertEquals(0.2, search(reopened, "chicken").get(this.chicken),
+				0.0001);
+	}
+
+	@Test
+	public void shouldIgnoreRemovedAndChangedDocuments() throws Exception {
+		this.index.open(this.directory);
+		this.index.add(this.chicken.id(), this.chicken.content());
+		this.index.add(this.road.id(), this.road.content());
+		this.index.flush();
+		this.index.remove(this.road.id());
+		assertFalse(search(this.index, "road").containsKey(this.road));
+
+		// a different question with the same id as an indexed one
+		this.questions.put(this.chicken.id(), this.road);
+		assertTrue(search(this.index, "chicken").isEmpty());
+	}
+
+	@Test
+	public void shouldMergeSegments() throws Exception {
+		this.index.open(this.directory);
+		for (int i = 0; i <= SearchIndex.MAX_SEGMENTS; i++) {
+			this.index.add(this.chicken.id(), this.chicken.content());
+			this.index.flush();
+		}
+		this.index.add(this.road.id(), this.road.content());
+		this.index.flush();
+		this.index.remove(this.road.id());
+
+		assertTrue(this.index.mergeIfNeeded());
+		assertEquals(1, this.index.segments().size());
+		IndexSegment merged = this.index.segments().get(0);
+		assertEquals(1, merged.docCount());
+		assertEquals(1, merged.postings("chicken").length);
+		assertEquals(0, merged.postings("Rome").length);
+		assertEquals(1, search(this.index, "road").size());
+		assertFalse(this.index.mergeIfNeeded());
+	}
+
+	@Test
+	public void shouldReplaceSegmentsWhenRebuilt() throws Exception {
+		this.index.open(this.directory);
+		this.index.add(this.chicken.id(), this.chicken.content());
+		this.index.flush();
+		File old = this.index.segments().get(0).file();
+
+		SearchIndex rebuilt = new SearchIndex();
+		rebuilt.add(this.road.id(), this.road.content());
+		this.index.replaceWith(rebuilt);
+		try {
+			assertFalse(old.exists());
+			assertTrue(this.index.segments().isEmpty());
+			assertEquals(1, rebuilt.segments().size());
+			assertTrue(rebuilt.isPersistent());
+			// the replaced index searches the rebuilt one
+			assertTrue(search(this.index, "chicken").isEmpty());
+			assertTrue(search(this.index, "Rome").containsKey(this.road));
+
+			SearchIndex reopened = new SearchIndex();
+			reopened.open(this.directory);
+			assertEquals(1, reopened.segments().size());
+			assertTrue(search(reopened, "Rome").containsKey(this.road));
+			reopened.segments().get(0).close();
+		} finally {
+			rebuilt.clear();
+		}
+	}
+
+	@Test
+	public void shouldOnlyCorrectIntoIndexedWords() throws Exception {
+		this.index.open(this.directory);
+		this.index.add(this.chicken.id(), this.chicken.content());
+		this.index.add(this.chicken.id(), this.chicken.content());
+		this.index.flush();
+		assertEquals("chicken", this.index.corrections(
+				Tokenizer.words("chiken")).get("chiken"));
+		this.index.remove(this.chicken.id(), this.chicken.content());
+		assertTrue(this.index.corrections(Tokenizer.words("chiken"))
+				.isEmpty());
+
+		// a rebuilt index doesn't know the words of the old segments
+		this.index.add(this.chicken.id(), this.chicken.content());
+		this.index.flush();
+		SearchIndex rebuilt = new SearchIndex();
+		rebuilt.add(this.road.id(), this.road.content());
+		this.index.replaceWith(rebuilt);
+		try {
+			assertTrue(rebuilt.corrections(Tokenizer.words("chiken"))
+					.isEmpty());
+			assertEquals("Rome", rebuilt.corrections(
+					Tokenizer.words("Romee")).get("Romee"));
+		} finally {
+			rebuilt.clear();
+		}
+	}
+
+	@Test
+	public void shouldEncodePostings() throws Exception {
+		this.index.open(this.directory);
+		for (int id : new int[] { 3, 200, 201, 100000 })
+			this.index.add(id, "varint encoding");
+		this.index.flush();
+		int[] postings = this.index.segments().get(0).postings("varint");
+		assertEquals(4, postings.length);
+		assertEquals(3, postings[0]);
+		assertEquals(200, postings[1]);
+		assertEquals(201, postings[2]);
+		assertEquals(100000, postings[3]);
+	}
+}
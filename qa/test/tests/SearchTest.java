@@ -1,6 +1,11 @@
 package tests;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 import models.Question;
+import models.Tag;
 import models.User;
 import models.database.Database;
 
@@ -60,4 +65,49 @@ public class SearchTest extends UnitTest {
 		assertTrue(Database.get().questions().searchFor("is relevant").contains(fulltextPositive));
 		assertTrue(Database.get().questions().searchFor("is relevant").contains(taggedPositive));
 	}
+
+	@Test
+	public void shouldFindMisspelledWords() {
+		assertTrue(Database.get().questions().searchFor("relevnt").contains(fulltextPositive));
+		assertTrue(Database.get().questions().searchFor("is relavant").contains(fulltextPositive));
+	}
+
+	@Test
+	public void shouldSuggestCorrection() {
+		assertEquals("is relevant?", Database.get().questions().suggestFor("is relevnt?"));
+		assertNull(Database.get().questions().suggestFor("relevant"));
+	}
+
+	@Test
+	public void shouldCountTags() {
+		taggedNegative.setTagString("plop relevant");
+		Map<Tag, Integer> facets = Database.get().questions().countTags(
+				Arrays.asList(fulltextPositive, taggedPositive, taggedNegative));
+		assertEquals(2, facets.size());
+		assertEquals(2, (int) facets.get(Tag.get("relevant")));
+		assertEquals(1, (int) facets.get(Tag.get("plop")));
+		assertEquals(Tag.get("relevant"), facets.keySet().iterator().next());
+		assertTrue(Tag.get("plop").contains(taggedNegative));
+		assertFalse(Tag.get("plop").contains(taggedPositive));
+	}
+
+	@Test
+	public void shouldCountTagsWithoutLookingAtHits() {
+		final boolean[] counting = { false };
+		Question hit = new Question(new User("Joe", ""), "Count me.") {
+			@Override
+			public List<Tag> getTags() {
+				assertFalse("tags of a hit looked at", counting[0]);
+				return super.getTags();
+			}
+		};
+		hit.setTagString("relevant counted");
+		counting[0] = true;
+		Map<Tag, Integer> facets = Database.get().questions().countTags(
+				Arrays.asList(hit, taggedPositive));
+		counting[0] = false;
+		assertEquals(2, (int) facets.get(Tag.get("relevant")));
+		assertEquals(1, (int) facets.get(Tag.get("counted")));
+		assertEquals(2, facets.size());
+	}
 }
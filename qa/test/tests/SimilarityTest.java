@@ -0,0 +1,112 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import models.Question;
+import models.User;
+import models.SearchEngine.MinHash;
+import models.SearchEngine.SimilarityIndex;
+import models.database.Database;
+
+import org.junit.Test;
+
+import play.Logger;
+import play.test.UnitTest;
+
+public class SimilarityTest extends UnitTest {
+
+	@Test
+	public void shouldEstimateSimilarity() {
+		int[] a = MinHash.signature("How do I cook pasta al dente?");
+		int[] b = MinHash.signature("How do I cook pasta al dente?");
+		int[] c = MinHash.signature("Which planet has the most moons?");
+		assertEquals(1.0, MinHash.similarity(a, b), 0.0001);
+		assertTrue(MinHash.similarity(a, c) < 0.2);
+		assertNull(MinHash.signature("Is it?"));
+	}
+
+	@Test
+	public void shouldFindSimilarUntaggedQuestions() {
+		User jack = new User("Jack", "jack");
+		Question original = new Question(jack,
+				"How can I convert a string into an integer in Java?");
+		Question duplicate = new Question(jack,
+				"how can i convert a String into an Integer in Java");
+		Question other = new Question(jack, "Which planet has the most moons?");
+
+		assertTrue(original.getSimilarQuestions().contains(duplicate));
+		assertFalse(original.getSimilarQuestions().contains(other));
+		assertTrue(Database.get().questions().findDuplicates(original)
+				.contains(duplicate));
+		assertFalse(Database.get().questions().findDuplicates(original)
+				.contains(other));
+
+		duplicate.unregister();
+		assertFalse(original.getSimilarQuestions().contains(duplicate));
+	}
+
+	/**
+	 * Compares the pairs found through LSH buckets with the pairs found by
+	 * computing the exact Jaccard similarity of all pairs.
+	 */
+	@Test
+	public void shouldRecallNearDuplicates() {
+		Random random = new Random(1);
+		String[] vocabulary = new String[2000];
+		for (int i = 0; i < vocabulary.length; i++)
+			vocabulary[i] = "word" + i;
+
+		List<String> texts = new ArrayList<String>();
+		for (int i = 0; i < 500; i++) {
+			StringBuilder text = new StringBuilder();
+			for (int w = 0; w < 20; w++)
+				text.append(vocabulary[random.nextInt(vocabulary.length)])
+						.append(' ');
+			texts.add(text.toString());
+			// every other text gets a near duplicate with one word changed
+			if (i % 2 == 0)
+				texts.add(text.toString().replaceFirst("\\w+ $",
+						vocabulary[random.nextInt(vocabulary.length)]));
+		}
+
+		SimilarityIndex index = new SimilarityIndex();
+		List<Set<String>> shingles = new ArrayList<Set<String>>();
+		for (int i = 0; i < texts.size(); i++) {
+			index.add(i, texts.get(i));
+			shingles.add(MinHash.shingles(texts.get(i)));
+		}
+
+		double threshold = 0.8;
+		int expected = 0, found = 0;
+		long start = System.nanoTime();
+		Set<String> exact = new HashSet<String>();
+		for (int i = 0; i < texts.size(); i++)
+			for (int j = i + 1; j < texts.size(); j++)
+				if (MinHash.jaccard(shingles.get(i), shingles.get(j)) >= threshold)
+					exact.add(i + "-" + j);
+		long exactTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		Set<String> approximate = new HashSet<String>();
+		for (int i = 0; i < texts.size(); i++)
+			for (int j : index.similarTo(i, threshold).keySet())
+				approximate.add(Math.min(i, j) + "-" + Math.max(i, j));
+		long lshTime = System.nanoTime() - start;
+
+		for (String pair : exact) {
+			expected++;
+			if (approximate.contains(pair))
+				found++;
+		}
+		double recall = 1.0 * found / expected;
+		Logger.info("MinHash/LSH recall %.3f (%d of %d pairs), "
+				+ "exact %d ms, LSH %d ms", recall, found, expected,
+				exactTime / 1000000, lshTime / 1000000);
+		assertTrue(expected >= 200);
+		assertTrue("recall " + recall, recall >= 0.9);
+	}
+}
@@ -0,0 +1,95 @@
+package tests;
+
+import java.util.Random;
+
+import models.SearchEngine.SpellingDictionary;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class SpellingDictionaryTest extends UnitTest {
+
+	private SpellingDictionary dictionary;
+
+	@Before
+	public void setUp() {
+		this.dictionary = new SpellingDictionary();
+		this.dictionary.add("chicken", 3);
+		this.dictionary.add("kitchen", 1);
+		this.dictionary.add("road", 2);
+		this.dictionary.add("read", 5);
+		this.dictionary.add("universe", 1);
+	}
+
+	@Test
+	public void shouldKeepKnownWords() {
+		assertTrue(this.dictionary.contains("road"));
+		assertEquals("road", this.dictionary.correct("road"));
+		assertEquals(5, this.dictionary.size());
+	}
+
+	@Test
+	public void shouldCorrectSingleErrors() {
+		assertEquals("chicken", this.dictionary.correct("chiken"));
+		assertEquals("chicken", this.dictionary.correct("chickenn"));
+		assertEquals("chicken", this.dictionary.correct("chikcen"));
+		assertEquals("universe", this.dictionary.correct("universa"));
+	}
+
+	@Test
+	public void shouldCorrectDoubleErrors() {
+		assertEquals("universe", this.dictionary.correct("unverse"));
+		assertEquals("universe", this.dictionary.correct("univrs"));
+		assertNull(this.dictionary.correct("unvrs"));
+	}
+
+	@Test
+	public void shouldPreferFrequentWords() {
+		assertEquals("road", this.dictionary.correct("roid"));
+		// "raad" is one edit away from both "road" and "read"
+		assertEquals("read", this.dictionary.correct("raad"));
+	}
+
+	@Test
+	public void shouldForgetRemovedWords() {
+		this.dictionary.remove("read", 4);
+		assertEquals(1, this.dictionary.frequency("read"));
+		assertEquals("road", this.dictionary.correct("raad"));
+		this.dictionary.remove("road", 2);
+		assertFalse(this.dictionary.contains("road"));
+		assertEquals(4, this.dictionary.size());
+		assertEquals("read", this.dictionary.correct("roid"));
+		this.dictionary.remove("read", 1);
+		assertNull(this.dictionary.correct("roid"));
+
+		this.dictionary.add("road", 1);
+		assertTrue(this.dictionary.contains("road"));
+		assertEquals(4, this.dictionary.size());
+	}
+
+	@Test
+	public void shouldNotCorrectShortWords() {
+		assertNull(this.dictionary.correct("ro"));
+		assertNull(this.dictionary.correct("xyzzy"));
+	}
+
+	@Test
+	public void shouldCorrectQuicklyInLargeVocabulary() {
+		SpellingDictionary large = new SpellingDictionary();
+		Random random = new Random(42);
+		for (int i = 0; i < 50000; i++) {
+			char[] word = new char[5 + random.nextInt(8)];
+			for (int j = 0; j < word.length; j++)
+				word[j] = (char) ('a' + random.nextInt(26));
+			large.add(new String(word), 1);
+		}
+		large.add("chicken", 1);
+		long start = System.nanoTime();
+		for (int i = 0; i < 100; i++)
+			assertEquals("chicken", large.correct("chikcen"));
+		long perLookup = (System.nanoTime() - start) / 100;
+		assertTrue("lookup took " + perLookup + "ns", perLookup < 5000000);
+	}
+}
@@ -180,6 +180,71 @@ public class TagTest extends UnitTest {
 				SetOperations.arrayEquals(possibility2,similar.toArray()));
 	}
 
+	@Test
+	public void shouldNotifyTagSubscribersOnce() {
+		User watcher = new User("Watcher", "watcher");
+		Tag tagA = Tag.get("a" + this.tagName);
+		Tag tagB = Tag.get("b" + this.tagName);
+		watcher.startWatching(tagA);
+		watcher.startWatching(tagB);
+		this.douglas.startWatching(tagA);
+		assertTrue(watcher.isWatching(tagA));
+		assertFalse(watcher.isWatching(Tag.get("c" + this.tagName)));
+
+		this.question1.setTagString(tagA.getName() + " " + tagB.getName());
+		assertEquals(1, watcher.getNotifications().size());
+		assertEquals(this.question1, watcher.getNotifications().get(0)
+				.getQuestion());
+		// nobody gets notified about his own questions
+		assertEquals(0, this.douglas.getNotifications().size());
+
+		// only newly added tags cause notifications
+		this.question1.setTagString(tagB.getName() + " c" + this.tagName);
+		assertEquals(1, watcher.getNotifications().size());
+
+		watcher.stopWatching(tagA);
+		watcher.stopWatching(tagB);
+		assertFalse(watcher.isWatching(tagA));
+		this.question2.setTagString(tagB.getName());
+		assertEquals(1, watcher.getNotifications().size());
+
+		// notifications about deleted questions are dropped
+		this.question1.unregister();
+		assertEquals(0, watcher.getNotifications().size());
+	}
+
+	@Test
+	public void shouldKeepWatchedTags() {
+		User watcher = new User("Watcher", "watcher");
+		Tag tag = Tag.get(this.tagName);
+		watcher.startWatching(tag);
+		this.question1.setTagString(this.tagName);
+		this.question1.setTagString("");
+		assertEquals(1, countTags(this.tagName));
+		assertSame(tag, Tag.get(this.tagName));
+
+		watcher.stopWatching(tag);
+		assertEquals(0, countTags(this.tagName));
+	}
+
+	@Test
+	public void shouldUnsubscribeDeletedUsers() {
+		User watcher = Database.get().users().register("Watcher", "watcher");
+		Tag tag = Tag.get(this.tagName);
+		watcher.startWatching(tag);
+		assertEquals(1, watcher.getWatchedTags().size());
+
+		// hidden users aren't notified while their items are being deleted
+		watcher.hide();
+		this.question1.setTagString(this.tagName);
+		assertEquals(0, watcher.getNotifications().size());
+
+		watcher.delete();
+		assertFalse(tag.hasSubscriber(watcher));
+		assertTrue(watcher.getWatchedTags().isEmpty());
+		this.question1.setTagString("");
+		assertEquals(0, countTags(this.tagName));
+	}
 
 	private static int countTags(String name) {
 		int count = 0;
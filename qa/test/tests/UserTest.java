@@ -1,9 +1,13 @@
 package tests;
 
 import java.text.ParseException;
+import java.util.Date;
+import java.util.List;
 
 import models.Question;
 import models.User;
+import models.database.Database;
+import models.helpers.SlidingWindowCounter;
 
 import org.junit.Test;
 
@@ -23,15 +27,45 @@ public class UserTest extends UnitTest {
 		assertEquals(user.getName(), "Jack");
 	}
 	
-	/*
-	 * doesn't work anymore. Method isAvailable(username) has to be modified
-	 * 
-	 * @Test public void checkUsernameAvailable() {
-	 * assertTrue(User.isAvailable("JaneSmith")); User user = new
-	 * User("JaneSmith", "janesmith");
-	 * assertFalse(User.isAvailable("JaneSmith"));
-	 * assertFalse(User.isAvailable("jAnEsMiTh")); }
-	 */
+	@Test
+	public void checkUsernameAvailable() {
+		Database.clear();
+		assertTrue(User.isAvailable("JaneSmith"));
+		User user = Database.get().users().register("JaneSmith", "janesmith");
+		assertFalse(User.isAvailable("JaneSmith"));
+		assertFalse(User.isAvailable("jAnEsMiTh"));
+		assertSame(user, User.get("janesmith"));
+		Database.get().users().remove("JANESMITH");
+		assertTrue(User.isAvailable("JaneSmith"));
+	}
+
+	@Test
+	public void shouldNotRegisterTakenNames() {
+		Database.clear();
+		User user = Database.get().users().register("JaneSmith", "janesmith");
+		assertNull(Database.get().users().register("janesmith", "other"));
+		assertSame(user, User.get("JaneSmith"));
+		assertNull(Database.get().users().register(null, "null"));
+		assertNull(Database.get().users().get(null));
+		assertTrue(Database.get().users().needSignUp(null));
+		Database.clear();
+	}
+
+	@Test
+	public void shouldFindUsersByPrefix() {
+		Database.clear();
+		Database.get().users().register("Jack", "jack");
+		Database.get().users().register("jane", "jane");
+		Database.get().users().register("Joe", "joe");
+		Database.get().users().register("Jim", "jim");
+		List<User> found = Database.get().users().findByPrefix("JA", 10);
+		assertEquals(2, found.size());
+		assertEquals("Jack", found.get(0).getName());
+		assertEquals("jane", found.get(1).getName());
+		assertEquals(1, Database.get().users().findByPrefix("j", 1).size());
+		assertEquals(0, Database.get().users().findByPrefix("x", 10).size());
+		Database.clear();
+	}
 
 	@Test
 	public void shouldCheckeMailValidation(){
@@ -101,6 +135,60 @@ public class UserTest extends UnitTest {
 		assertTrue(user.isCheating());
 	}
 	
+	@Test
+	public void shouldOnlyCountCurrentUpvotesAsSupport() {
+		User author = new User("Author", "author");
+		User other = new User("Other", "other");
+		User third = new User("Third", "third");
+		User voter = new User("Voter", "voter");
+		new Question(third, "Third question").voteUp(voter);
+		Question[] questions = new Question[4];
+		for (int i = 0; i < questions.length; i++) {
+			questions[i] = new Question(author, "Question " + i);
+			questions[i].voteUp(voter);
+			new Question(other, "Other question " + i).voteUp(voter);
+		}
+		assertFalse(voter.isMaybeCheater());
+
+		// retracted votes don't count
+		questions[0].voteDown(voter);
+		questions[0].voteUp(voter);
+		new Question(author, "Question 4").voteUp(voter);
+		// exactly half of the votes isn't enough
+		assertFalse(voter.isBlocked());
+
+		new Question(author, "Question 5").voteUp(voter);
+		assertTrue(voter.isBlocked());
+		assertTrue(voter.isMaybeCheater());
+	}
+
+	@Test
+	public void shouldCountPostsOfLastHourOnly() {
+		SlidingWindowCounter counter = new SlidingWindowCounter(60, 60 * 1000);
+		long start = 1000L * 60 * 60 * 24 * 365 * 40;
+		for (int i = 0; i < 90; i++)
+			counter.add(new Date(start + i * 60 * 1000));
+		assertEquals(60, counter.count(new Date(start + 89 * 60 * 1000)));
+		assertEquals(30, counter.count(new Date(start + 119 * 60 * 1000)));
+		assertEquals(0, counter.count(new Date(start + 149 * 60 * 1000)));
+
+		// too old to count any longer
+		counter.add(new Date(start));
+		counter.remove(new Date(start + 89 * 60 * 1000));
+		assertEquals(29, counter.count(new Date(start + 119 * 60 * 1000)));
+	}
+
+	@Test
+	public void shouldNotCountDeletedPosts() {
+		User user = new User("Spammer", "spammer");
+		Question question = new Question(user, "Why did the chicken cross the road?");
+		question.answer(user, "To get to the other side.");
+		new Question(user, "Does anybody know?");
+		assertEquals(3, user.howManyItemsPerHour());
+		question.unregister();
+		assertEquals(1, user.howManyItemsPerHour());
+	}
+
 	@Test
 	public void checkForCheater() {
 		User user = new User("TheSupported", "supported");
@@ -154,6 +242,58 @@ public class UserTest extends UnitTest {
 		assertEquals(1, user.getAnswers().size());
 	}
 
+	@Test
+	public void shouldCountItemsByKind() {
+		User user = new User("Jack", "jack");
+		User jill = new User("Jill", "jill");
+		Question q = new Question(user, "Why?");
+		q.answer(user, "Because");
+		q.comment(user, "Really?");
+		q.voteUp(jill);
+		assertEquals(1, user.countQuestions());
+		assertEquals(1, user.countAnswers());
+		assertEquals(1, user.countComments());
+		assertEquals(0, user.countVotes());
+		assertEquals(1, jill.countVotes());
+		assertTrue(user.hasItem(q));
+		assertFalse(jill.hasItem(q));
+
+		q.unregister();
+		assertEquals(0, user.countQuestions());
+		assertEquals(0, user.countAnswers());
+		assertEquals(0, user.countComments());
+		assertEquals(0, jill.countVotes());
+	}
+
+	@Test
+	public void shouldListMostRecentEntriesFirst() {
+		User user = new User("Jack", "jack");
+		Question[] questions = new Question[5];
+		for (int i = 0; i < questions.length; i++)
+			questions[i] = new Question(user, "Question " + i);
+		List<Question> recent = user.getRecentQuestions();
+		assertEquals(3, recent.size());
+		assertEquals(questions[4], recent.get(0));
+		assertEquals(questions[2], recent.get(2));
+
+		questions[4].unregister();
+		assertEquals(questions[3], user.getRecentQuestions().get(0));
+		assertEquals(0, user.getRecentComments().size());
+	}
+
+	@Test
+	public void shouldHandOutSnapshotsOfRecentEntries() {
+		User user = new User("Jack", "jack");
+		Question first = new Question(user, "First");
+		List<Question> recent = user.getRecentQuestions();
+		Question second = new Question(user, "Second");
+		first.unregister();
+		assertEquals(1, recent.size());
+		assertSame(first, recent.get(0));
+		assertEquals(1, user.countQuestions());
+		assertSame(second, user.getRecentQuestions().get(0));
+	}
+
 	@Test
 	public void shouldHaveNoAnswer() {
 		User user = new User("Jack", "jack");
@@ -0,0 +1,73 @@
+package tests;
+
+import java.util.List;
+
+import jobs.VotingRingJob;
+import models.Question;
+import models.User;
+import models.database.Database;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import play.test.UnitTest;
+
+public class VotingRingJobTest extends UnitTest {
+
+	private User[] users;
+
+	@Before
+	public void setUp() {
+		Database.clear();
+		this.users = new User[6];
+		for (int i = 0; i < this.users.length; i++)
+			this.users[i] = Database.get().users().register("User" + i,
+					"user" + i);
+	}
+
+	@After
+	public void tearDown() {
+		Database.clear();
+	}
+
+	private void upvote(User voter, User author, int count) {
+		for (int i = 0; i < count; i++)
+			Database.get().questions().add(author, "Question " + i).voteUp(
+					voter);
+	}
+
+	@Test
+	public void shouldFindVotingRings() throws Exception {
+		// users 0, 1 and 2 vote each other up
+		for (int i = 0; i < 3; i++)
+			for (int j = 0; j < 3; j++)
+				if (i != j)
+					this.upvote(this.users[i], this.users[j], 3);
+		// users 3 and 4 only vote for each other and user 5 is a fan of 0
+		this.upvote(this.users[3], this.users[4], 3);
+		this.upvote(this.users[4], this.users[3], 3);
+		this.upvote(this.users[5], this.users[0], 3);
+		for (User user : this.users)
+			assertFalse(user.isBlocked());
+
+		VotingRingJob job = new VotingRingJob();
+		job.doJob();
+		List<List<User>> rings = job.getRings();
+		assertEquals(1, rings.size());
+		assertEquals(3, rings.get(0).size());
+		for (int i = 0; i < this.users.length; i++)
+			assertEquals(i < 3, this.users[i].isBlocked());
+		assertEquals("User is part of a voting ring", this.users[0]
+				.getStatusMessage());
+	}
+
+	@Test
+	public void shouldIgnoreOccasionalVotes() throws Exception {
+		for (int i = 0; i < 3; i++)
+			for (int j = 0; j < 3; j++)
+				if (i != j)
+					this.upvote(this.users[i], this.users[j], 2);
+		assertTrue(new VotingRingJob().findRings().isEmpty());
+	}
+}